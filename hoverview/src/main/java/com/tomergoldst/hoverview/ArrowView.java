@@ -0,0 +1,133 @@
+/*
+Copyright 2017 Tomer Goldstein
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.tomergoldst.hoverview;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.support.v4.util.LruCache;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+
+/**
+ * Arrow drawn between an hoverview and its anchor.
+ *
+ * Arrows are rasterized once per (size, color, direction) and the bitmaps are shared
+ * by all arrow views, so drawing an arrow never builds or tessellates a path.
+ */
+class ArrowView extends View {
+
+    private static final int MAX_CACHED_ARROWS = 32;
+
+    private static final LruCache<Long, Bitmap> sArrowCache = new LruCache<>(MAX_CACHED_ARROWS);
+    private static final Paint sBitmapPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private Bitmap mArrow;
+    private long mArrowKey = -1;
+
+    ArrowView(Context context) {
+        super(context);
+        ViewCompat.setImportantForAccessibility(this, ViewCompat.IMPORTANT_FOR_ACCESSIBILITY_NO);
+    }
+
+    /**
+     * @param size arrow height in pixels, its base is twice as wide
+     * @param color arrow color
+     * @param direction one of the Placement.ARROW_* directions
+     */
+    void setArrow(int size, int color, int direction) {
+        long key = getKey(size, color, direction);
+        if (key == mArrowKey) {
+            return;
+        }
+        mArrowKey = key;
+        mArrow = getArrow(key, size, color, direction);
+        requestLayout();
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mArrow == null) {
+            setMeasuredDimension(0, 0);
+        } else {
+            setMeasuredDimension(mArrow.getWidth(), mArrow.getHeight());
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mArrow != null) {
+            canvas.drawBitmap(mArrow, 0, 0, sBitmapPaint);
+        }
+    }
+
+    private static long getKey(int size, int color, int direction) {
+        return ((long) color << 32) | ((long) (size & 0xFFFFFF) << 8) | (direction & 0xFF);
+    }
+
+    private static Bitmap getArrow(long key, int size, int color, int direction) {
+        Bitmap arrow = sArrowCache.get(key);
+        if (arrow == null) {
+            arrow = createArrow(size, color, direction);
+            sArrowCache.put(key, arrow);
+        }
+        return arrow;
+    }
+
+    private static Bitmap createArrow(int size, int color, int direction) {
+        int base = size * 2;
+        boolean vertical = direction == Placement.ARROW_UP || direction == Placement.ARROW_DOWN;
+        Bitmap bitmap = Bitmap.createBitmap(vertical ? base : size, vertical ? size : base,
+                Bitmap.Config.ARGB_8888);
+
+        Path path = new Path();
+        switch (direction) {
+            case Placement.ARROW_UP:
+                path.moveTo(0, size);
+                path.lineTo(size, 0);
+                path.lineTo(base, size);
+                break;
+            case Placement.ARROW_DOWN:
+                path.moveTo(0, 0);
+                path.lineTo(size, size);
+                path.lineTo(base, 0);
+                break;
+            case Placement.ARROW_LEFT:
+                path.moveTo(size, 0);
+                path.lineTo(0, size);
+                path.lineTo(size, base);
+                break;
+            case Placement.ARROW_RIGHT:
+            default:
+                path.moveTo(0, 0);
+                path.lineTo(size, size);
+                path.lineTo(0, base);
+                break;
+        }
+        path.close();
+
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(color);
+        paint.setStyle(Paint.Style.FILL);
+        new Canvas(bitmap).drawPath(path, paint);
+        return bitmap;
+    }
+
+}
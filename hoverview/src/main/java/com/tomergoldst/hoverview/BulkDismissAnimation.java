@@ -0,0 +1,116 @@
+/*
+Copyright 2017 Tomer Goldstein
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.tomergoldst.hoverview;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.TimeInterpolator;
+import android.animation.ValueAnimator;
+import android.view.View;
+import android.view.animation.AnticipateOvershootInterpolator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pop-out animation of several hoverviews dismissed together.
+ *
+ * A single animator drives the alpha and scale of all the hoverviews, so the whole batch is
+ * animated in the same frames and ends with a single callback. With a custom
+ * {@link HoverViewAnimator} each hoverview pops out through it instead, and the batch ends
+ * with the last of them.
+ */
+class BulkDismissAnimation extends AnimatorListenerAdapter implements ValueAnimator.AnimatorUpdateListener {
+
+    private static final TimeInterpolator INTERPOLATOR = new AnticipateOvershootInterpolator();
+
+    interface Callback {
+        void onBulkDismissEnd(BulkDismissAnimation animation);
+    }
+
+    final List<HoverView> mHoverViews = new ArrayList<>();
+    final int mReason;
+    private final Callback mCallback;
+    private final ValueAnimator mAnimator = ValueAnimator.ofFloat(1f, 0f);
+    // hoverviews popping out through a custom animator which did not end yet
+    private int mPendingCount;
+    private final AnimatorListenerAdapter mHoverViewEndListener = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            super.onAnimationEnd(animation);
+            if (--mPendingCount == 0) {
+                mCallback.onBulkDismissEnd(BulkDismissAnimation.this);
+            }
+        }
+    };
+
+    BulkDismissAnimation(@HoverViewManager.DismissReason int reason, Callback callback) {
+        mReason = reason;
+        mCallback = callback;
+        mAnimator.setInterpolator(INTERPOLATOR);
+        mAnimator.addUpdateListener(this);
+        mAnimator.addListener(this);
+    }
+
+    void add(HoverView hoverView) {
+        mHoverViews.add(hoverView);
+    }
+
+    void start(long duration) {
+        mAnimator.setDuration(duration);
+        mAnimator.start();
+    }
+
+    /**
+     * Pop each hoverview out through the given animator instead of the shared one.
+     */
+    void start(HoverViewAnimator animator, long duration) {
+        mPendingCount = mHoverViews.size();
+        for (int i = 0; i < mHoverViews.size(); i++) {
+            HoverView hoverView = mHoverViews.get(i);
+            animator.popout(hoverView.getView(), duration, mHoverViewEndListener).start();
+            if (hoverView.hasArrow()) {
+                animator.popout(hoverView.mArrowView, duration, null).start();
+            }
+        }
+    }
+
+    @Override
+    public void onAnimationUpdate(ValueAnimator animation) {
+        float value = (float) animation.getAnimatedValue();
+        for (int i = 0; i < mHoverViews.size(); i++) {
+            HoverView hoverView = mHoverViews.get(i);
+            apply(hoverView.getView(), value);
+            if (hoverView.hasArrow()) {
+                apply(hoverView.mArrowView, value);
+            }
+        }
+    }
+
+    private static void apply(View view, float value) {
+        view.setAlpha(Math.max(0f, Math.min(1f, value)));
+        view.setScaleX(value);
+        view.setScaleY(value);
+    }
+
+    @Override
+    public void onAnimationEnd(Animator animation) {
+        super.onAnimationEnd(animation);
+        mCallback.onBulkDismissEnd(this);
+    }
+
+}
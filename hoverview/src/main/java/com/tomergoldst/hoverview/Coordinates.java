@@ -29,12 +29,21 @@ public class Coordinates {
     int right;
     int bottom;
 
+    // location buffer shared by all instances, coordinates are only read on the main thread
+    private static final int[] sLocation = new int[2];
+
+    Coordinates(){
+    }
+
     public Coordinates(View view){
-        int[] location = new int[2];
-        view.getLocationOnScreen(location);
-        left = location[0];
-        right = left + view.getWidth();;
-        top = location[1];
+        set(view);
+    }
+
+    void set(View view){
+        view.getLocationOnScreen(sLocation);
+        left = sLocation[0];
+        right = left + view.getWidth();
+        top = sLocation[1];
         bottom = top + view.getHeight();
     }
 
@@ -20,6 +20,7 @@ import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.animation.ObjectAnimator;
 import android.animation.PropertyValuesHolder;
+import android.animation.TimeInterpolator;
 import android.animation.ValueAnimator;
 import android.view.View;
 import android.view.animation.AnticipateOvershootInterpolator;
@@ -27,43 +28,76 @@ import android.view.animation.OvershootInterpolator;
 
 /**
  * Created by Tomer on 18/06/2016.
+ *
+ * Animators are created once per view and reused, so showing and dismissing the
+ * same view again does not allocate.
  */
 class DefaultHoverViewAnimator implements HoverViewAnimator {
 
+    // interpolators are stateless, share them between all views
+    private static final TimeInterpolator POPUP_INTERPOLATOR = new OvershootInterpolator();
+    private static final TimeInterpolator POPOUT_INTERPOLATOR = new AnticipateOvershootInterpolator();
+
     @Override
     public ValueAnimator popup(final View view, final long duration) {
         view.setAlpha(0);
         view.setVisibility(View.VISIBLE);
 
-        ObjectAnimator popup = ObjectAnimator.ofPropertyValuesHolder(view,
-                PropertyValuesHolder.ofFloat("alpha", 0f, 1f),
-                PropertyValuesHolder.ofFloat("scaleX", 0f, 1f),
-                PropertyValuesHolder.ofFloat("scaleY", 0f, 1f));
+        ObjectAnimator popup = getAnimatorCache(view).mPopup;
         popup.setDuration(duration);
-        popup.setInterpolator(new OvershootInterpolator());
-
         return popup;
     }
 
     @Override
     public ValueAnimator popout(final View view, final long duration, final AnimatorListenerAdapter animatorListenerAdapter) {
-        ObjectAnimator popout = ObjectAnimator.ofPropertyValuesHolder(view,
-                PropertyValuesHolder.ofFloat("alpha", 1f, 0f),
-                PropertyValuesHolder.ofFloat("scaleX", 1f, 0f),
-                PropertyValuesHolder.ofFloat("scaleY", 1f, 0f));
-        popout.setDuration(duration);
-        popout.addListener(new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                super.onAnimationEnd(animation);
-                view.setVisibility(View.GONE);
-                if (animatorListenerAdapter != null) {
-                    animatorListenerAdapter.onAnimationEnd(animation);
-                }
-            }
-        });
-        popout.setInterpolator(new AnticipateOvershootInterpolator());
+        AnimatorCache cache = getAnimatorCache(view);
+        cache.mPopoutListener = animatorListenerAdapter;
+        cache.mPopout.setDuration(duration);
+        return cache.mPopout;
+    }
+
+    private static AnimatorCache getAnimatorCache(View view) {
+        AnimatorCache cache = (AnimatorCache) view.getTag(R.id.hoverview_animator_cache);
+        if (cache == null) {
+            cache = new AnimatorCache(view);
+            view.setTag(R.id.hoverview_animator_cache, cache);
+        }
+        return cache;
+    }
 
-        return popout;
+    private static class AnimatorCache extends AnimatorListenerAdapter {
+
+        final View mView;
+        final ObjectAnimator mPopup;
+        final ObjectAnimator mPopout;
+        AnimatorListenerAdapter mPopoutListener;
+
+        AnimatorCache(View view) {
+            mView = view;
+
+            mPopup = ObjectAnimator.ofPropertyValuesHolder(view,
+                    PropertyValuesHolder.ofFloat(View.ALPHA, 0f, 1f),
+                    PropertyValuesHolder.ofFloat(View.SCALE_X, 0f, 1f),
+                    PropertyValuesHolder.ofFloat(View.SCALE_Y, 0f, 1f));
+            mPopup.setInterpolator(POPUP_INTERPOLATOR);
+
+            mPopout = ObjectAnimator.ofPropertyValuesHolder(view,
+                    PropertyValuesHolder.ofFloat(View.ALPHA, 1f, 0f),
+                    PropertyValuesHolder.ofFloat(View.SCALE_X, 1f, 0f),
+                    PropertyValuesHolder.ofFloat(View.SCALE_Y, 1f, 0f));
+            mPopout.setInterpolator(POPOUT_INTERPOLATOR);
+            mPopout.addListener(this);
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            super.onAnimationEnd(animation);
+            mView.setVisibility(View.GONE);
+            AnimatorListenerAdapter listener = mPopoutListener;
+            mPopoutListener = null;
+            if (listener != null) {
+                listener.onAnimationEnd(animation);
+            }
+        }
     }
 }
@@ -0,0 +1,180 @@
+/*
+Copyright 2017 Tomer Goldstein
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.tomergoldst.hoverview;
+
+import android.support.annotation.IntDef;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Ring buffer of the last hoverview lifecycle events of a {@link HoverViewManager}.
+ *
+ * Events are kept in parallel primitive arrays allocated once, so recording an event is a
+ * few array stores and never allocates. When the buffer is full the oldest events are
+ * overwritten. Events are recorded on the main thread, dump them from the main thread too.
+ */
+public class FlightRecorder {
+
+    @IntDef({EVENT_SHOW, EVENT_PLACE, EVENT_DISMISS, EVENT_ANIMATION_START, EVENT_ANIMATION_END,
+            EVENT_LAYER})
+    public @interface Event {}
+    /** an hoverview was shown, arg0 is 1 if it was already shown and reused */
+    public static final int EVENT_SHOW = 0;
+    /** an hoverview was placed, arg0 is the chosen position and arg1 the width */
+    public static final int EVENT_PLACE = 1;
+    /** an hoverview was dismissed, arg0 is the {@link HoverViewManager.DismissReason} */
+    public static final int EVENT_DISMISS = 2;
+    /** arg0 is {@link #ANIMATION_POPUP} or {@link #ANIMATION_POPOUT} */
+    public static final int EVENT_ANIMATION_START = 3;
+    /** arg0 is {@link #ANIMATION_POPUP} or {@link #ANIMATION_POPOUT} */
+    public static final int EVENT_ANIMATION_END = 4;
+    /** hardware layer decision of an animation, arg0 is 1 if promoted and arg1 the view area */
+    public static final int EVENT_LAYER = 5;
+
+    public static final int ANIMATION_POPUP = 0;
+    public static final int ANIMATION_POPOUT = 1;
+
+    private static final String[] EVENT_NAMES = {"show", "place", "dismiss",
+            "animation_start", "animation_end", "layer"};
+
+    // binary trace header, followed by the number of events and the events, oldest first
+    private static final int BINARY_MAGIC = 0x48564652; // HVFR
+    private static final int BINARY_VERSION = 1;
+
+    static final int DEFAULT_CAPACITY = 256;
+
+    private final int mMask;
+    private final long[] mTimes;
+    private final byte[] mEvents;
+    private final int[] mAnchors;
+    private final int[] mArgs0;
+    private final int[] mArgs1;
+    // total number of events recorded, the next one goes to mCount & mMask
+    private long mCount;
+    private boolean mEnabled = true;
+
+    /**
+     * @param capacity number of events kept, rounded up to a power of two
+     */
+    public FlightRecorder(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mMask = size - 1;
+        mTimes = new long[size];
+        mEvents = new byte[size];
+        mAnchors = new int[size];
+        mArgs0 = new int[size];
+        mArgs1 = new int[size];
+    }
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    public int getCapacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * @return number of events currently held
+     */
+    public int size() {
+        return (int) Math.min(mCount, mMask + 1);
+    }
+
+    public void clear() {
+        mCount = 0;
+    }
+
+    void record(@Event int event, int anchorViewId, int arg0, int arg1) {
+        if (!mEnabled) {
+            return;
+        }
+        int index = (int) (mCount++ & mMask);
+        // same monotonic clock as SystemClock.uptimeMillis(), callable from JVM tests
+        mTimes[index] = System.nanoTime() / 1000000;
+        mEvents[index] = (byte) event;
+        mAnchors[index] = anchorViewId;
+        mArgs0[index] = arg0;
+        mArgs1[index] = arg1;
+    }
+
+    /**
+     * Write the held events as a JSON array, oldest first. Each event is an object with
+     * the uptime in milliseconds, the event name, the anchor view id and the event arguments.
+     */
+    public void dumpJson(Writer writer) throws IOException {
+        int size = size();
+        long first = mCount - size;
+        writer.write('[');
+        for (int i = 0; i < size; i++) {
+            int index = (int) ((first + i) & mMask);
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write("\n{\"time\":");
+            writer.write(Long.toString(mTimes[index]));
+            writer.write(",\"event\":\"");
+            writer.write(EVENT_NAMES[mEvents[index]]);
+            writer.write("\",\"anchor\":");
+            writer.write(Integer.toString(mAnchors[index]));
+            writer.write(",\"arg0\":");
+            writer.write(Integer.toString(mArgs0[index]));
+            writer.write(",\"arg1\":");
+            writer.write(Integer.toString(mArgs1[index]));
+            writer.write('}');
+        }
+        writer.write("\n]\n");
+        writer.flush();
+    }
+
+    /**
+     * Write the held events as a big endian binary trace: magic, version and event count as
+     * ints, then per event, oldest first, the uptime as a long, the event as a byte and the
+     * anchor view id and the two arguments as ints.
+     */
+    public void dumpBinary(OutputStream stream) throws IOException {
+        DataOutputStream output = new DataOutputStream(stream);
+        int size = size();
+        long first = mCount - size;
+        output.writeInt(BINARY_MAGIC);
+        output.writeInt(BINARY_VERSION);
+        output.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            int index = (int) ((first + i) & mMask);
+            output.writeLong(mTimes[index]);
+            output.writeByte(mEvents[index]);
+            output.writeInt(mAnchors[index]);
+            output.writeInt(mArgs0[index]);
+            output.writeInt(mArgs1[index]);
+        }
+        output.flush();
+    }
+
+}
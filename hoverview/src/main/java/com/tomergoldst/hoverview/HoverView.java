@@ -16,10 +16,14 @@ limitations under the License.
 */
 package com.tomergoldst.hoverview;
 
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
 import android.content.Context;
+import android.support.annotation.ColorInt;
 import android.support.annotation.IntDef;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.TextView;
 
 /**
  * Created by Tomer on 01/07/2016.
@@ -41,6 +45,9 @@ public class HoverView {
     public static final int ALIGN_LEFT = 1;
     public static final int ALIGN_RIGHT = 2;
 
+    // time waited by default for a precomputed text before showing the plain text
+    static final long DEFAULT_TEXT_DEADLINE = 100;
+
     private Context mContext;
     private View mAnchorView;
     private ViewGroup mRootViewGroup;
@@ -49,6 +56,71 @@ public class HoverView {
     private int mOffsetX;
     private int mOffsetY;
     private View mView;
+    private long mDismissTimeout;
+    private int mArrowSize;
+    private int mArrowColor;
+    private int mPriority;
+    private boolean mShowOnce;
+    private long mShowOnceId;
+    private boolean mStackable;
+    private boolean mHasPlacementCacheKey;
+    private long mPlacementCacheKey;
+    private TextView mTextView;
+    private CharSequence mText;
+    private long mTextDeadline;
+    private CharSequence mFallbackText;
+
+    // pending auto dismiss timer, owned by the HoverViewManager showing this hoverview
+    TimingWheel.Timer<HoverView> mDismissTimer;
+
+    // last placement, kept to place the hoverview again when its root is resized
+    final Placement mPlacement = new Placement();
+
+    // text layout computed in the background, null when none is pending
+    PrecomputedTextTask mTextTask;
+    // the text was set on the text view, later shows use it as is
+    boolean mTextApplied;
+
+    // layout params width of the view before any width constraint was applied
+    int mLayoutWidth;
+
+    // state of a shown hoverview, set by the manager and reused when the hoverview is shown again
+    boolean mShown;
+    int mAnchorViewId;
+    int mDismissReason;
+    AnimatorListenerAdapter mDismissAnimatorListener;
+    AnimatorListenerAdapter mPopupAnimatorListener;
+    // dismissed in a bulk dismissal being collected, not moved when its stack changes
+    boolean mInBatch;
+    // last popup animators of the view and its arrow, cancelled by a bulk dismissal
+    ValueAnimator mPopupAnimator;
+    ValueAnimator mArrowPopupAnimator;
+    // layer type of the view before it was promoted to a hardware layer for an animation
+    boolean mLayerPromoted;
+    int mSavedLayerType;
+    // animation the layer is held for, only that one restores the layer type when it ends
+    int mLayerOwner;
+    ArrowView mArrowView;
+
+    // anchor state last seen by the anchor tracking, anchors that did not change are skipped
+    int mAnchorLeft;
+    int mAnchorTop;
+    int mAnchorWidth;
+    int mAnchorHeight;
+    boolean mAnchorShown;
+    // anchor is out of sight, the hoverview is kept but not drawn
+    boolean mSuspended;
+
+    // other hoverviews shown near the same anchor, see HoverViewStack
+    HoverView mStackPrevious;
+    HoverView mStackNext;
+
+    // rect of the hoverview in its root collision grid
+    HoverViewGrid.Entry<HoverView> mGridEntry;
+
+    // position in the manager eviction heap, -1 when not active
+    int mHeapIndex = -1;
+    long mShowSequence;
 
     public HoverView(Builder builder){
         mContext = builder.mContext;
@@ -60,6 +132,19 @@ public class HoverView {
         mOffsetX = builder.mOffsetX;
         mOffsetY = builder.mOffsetY;
         mView = builder.mView;
+        mDismissTimeout = builder.mDismissTimeout;
+        mArrowSize = builder.mArrowSize;
+        mArrowColor = builder.mArrowColor;
+        mPriority = builder.mPriority;
+        mShowOnce = builder.mShowOnce;
+        mShowOnceId = builder.mShowOnceId;
+        mStackable = builder.mStackable;
+        mHasPlacementCacheKey = builder.mHasPlacementCacheKey;
+        mPlacementCacheKey = builder.mPlacementCacheKey;
+        mTextView = builder.mTextView;
+        mText = builder.mText;
+        mTextDeadline = builder.mTextDeadline;
+        mFallbackText = builder.mFallbackText;
     }
 
     public Context getContext() {
@@ -130,6 +215,66 @@ public class HoverView {
         mView = view;
     }
 
+    public long getDismissTimeout() {
+        return mDismissTimeout;
+    }
+
+    public boolean hasArrow() {
+        return mArrowSize > 0;
+    }
+
+    public int getArrowSize() {
+        return mArrowSize;
+    }
+
+    public int getArrowColor() {
+        return mArrowColor;
+    }
+
+    public int getPriority() {
+        return mPriority;
+    }
+
+    public boolean isShowOnce() {
+        return mShowOnce;
+    }
+
+    public long getShowOnceId() {
+        return mShowOnceId;
+    }
+
+    public boolean isStackable() {
+        return mStackable;
+    }
+
+    public boolean hasPlacementCacheKey() {
+        return mHasPlacementCacheKey;
+    }
+
+    public long getPlacementCacheKey() {
+        return mPlacementCacheKey;
+    }
+
+    public boolean hasPrecomputedText() {
+        return mTextView != null;
+    }
+
+    public TextView getTextView() {
+        return mTextView;
+    }
+
+    public CharSequence getText() {
+        return mText;
+    }
+
+    public long getTextDeadline() {
+        return mTextDeadline;
+    }
+
+    public CharSequence getFallbackText() {
+        return mFallbackText;
+    }
+
     public static class Builder {
         private Context mContext;
         private View mAnchorView;
@@ -139,6 +284,19 @@ public class HoverView {
         private int mOffsetX;
         private int mOffsetY;
         private View mView;
+        private long mDismissTimeout;
+        private int mArrowSize;
+        private int mArrowColor;
+        private int mPriority;
+        private boolean mShowOnce;
+        private long mShowOnceId;
+        private boolean mStackable;
+        private boolean mHasPlacementCacheKey;
+        private long mPlacementCacheKey;
+        private TextView mTextView;
+        private CharSequence mText;
+        private long mTextDeadline = DEFAULT_TEXT_DEADLINE;
+        private CharSequence mFallbackText;
 
         /**
          * @param context context
@@ -156,6 +314,9 @@ public class HoverView {
             mOffsetX = 0;
             mOffsetY = 0;
             mView = view;
+            mDismissTimeout = 0;
+            mArrowSize = 0;
+            mPriority = 0;
         }
 
         public Builder setPosition(@Position int position){
@@ -191,6 +352,127 @@ public class HoverView {
             return this;
         }
 
+        /**
+         * @param timeout time in milliseconds after which the hoverview is dismissed
+         *                automatically, 0 to keep it until dismissed
+         * @return builder
+         */
+        public Builder setDismissTimeout(long timeout) {
+            mDismissTimeout = timeout;
+            return this;
+        }
+
+        /**
+         * Draw an arrow from the hoverview to the anchor view. The hoverview is moved away from
+         * the anchor to make room for it.
+         * @param size arrow height in pixels, its base is twice as wide, 0 for no arrow
+         * @param color arrow color, usually the hoverview background color
+         * @return builder
+         */
+        public Builder setArrow(int size, @ColorInt int color) {
+            mArrowSize = size;
+            mArrowColor = color;
+            return this;
+        }
+
+        /**
+         * @param priority when the manager limits the number of active hoverviews, lower
+         *                 priority hoverviews are evicted first
+         * @return builder
+         */
+        public Builder setPriority(int priority) {
+            mPriority = priority;
+            return this;
+        }
+
+        /**
+         * Show this hoverview only once, requires a {@link ShownRegistry} set on the manager.
+         * @param id unique id of the hoverview
+         * @return builder
+         */
+        public Builder setShowOnce(String id) {
+            return setShowOnce(ShownRegistry.toId(id));
+        }
+
+        /**
+         * Show this hoverview only once, requires a {@link ShownRegistry} set on the manager.
+         * @param id unique id of the hoverview
+         * @return builder
+         */
+        public Builder setShowOnce(long id) {
+            mShowOnce = true;
+            mShowOnceId = id;
+            return this;
+        }
+
+        /**
+         * @param stackable true to stack this hoverview next to the hoverviews already shown near
+         *                  the same anchor view, instead of reusing the shown one
+         * @return builder
+         */
+        public Builder setStackable(boolean stackable) {
+            mStackable = stackable;
+            return this;
+        }
+
+        /**
+         * Cache the placement of this hoverview in the {@link PlacementCache}, so showing it
+         * again near the same anchor, e.g. after the activity is recreated, skips measuring.
+         * @param key identifies the hoverview content, change it when the content changes
+         * @return builder
+         */
+        public Builder setPlacementCacheKey(String key) {
+            return setPlacementCacheKey(ShownRegistry.toId(key));
+        }
+
+        /**
+         * Cache the placement of this hoverview in the {@link PlacementCache}, so showing it
+         * again near the same anchor, e.g. after the activity is recreated, skips measuring.
+         * @param key identifies the hoverview content, change it when the content changes
+         * @return builder
+         */
+        public Builder setPlacementCacheKey(long key) {
+            mHasPlacementCacheKey = true;
+            mPlacementCacheKey = key;
+            return this;
+        }
+
+        /**
+         * Lay the text out on a background thread before the hoverview is measured. By default
+         * the hoverview is shown once the text is ready, or with the plain text after
+         * {@link #setTextDeadline(long)}.
+         * @param textView text view of the hoverview view showing the text
+         * @param text text to show
+         * @return builder
+         */
+        public Builder setPrecomputedText(TextView textView, CharSequence text) {
+            mTextView = textView;
+            mText = text;
+            return this;
+        }
+
+        /**
+         * @param deadline milliseconds to wait for the precomputed text before showing the
+         *                 plain text, 0 to wait until it is ready
+         * @return builder
+         */
+        public Builder setTextDeadline(long deadline) {
+            mTextDeadline = deadline;
+            return this;
+        }
+
+        /**
+         * Show the hoverview immediately with a fallback text, the precomputed text replaces it
+         * and the hoverview is placed again once ready.
+         * @param fallbackText text shown until the precomputed text is ready, e.g. a short
+         *                     summary or an empty string
+         * @return builder
+         */
+        public Builder setFallbackText(CharSequence fallbackText) {
+            mFallbackText = fallbackText;
+            return this;
+        }
+
         public HoverView build(){
             return new HoverView(this);
         }
@@ -0,0 +1,161 @@
+/*
+Copyright 2017 Tomer Goldstein
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.tomergoldst.hoverview;
+
+import java.util.ArrayList;
+
+/**
+ * Spatial index of the rects of the hoverviews shown in a root.
+ *
+ * The plane is divided into square cells hashed into a fixed number of buckets. A rect is
+ * registered in the bucket of every cell it covers, so inserting, removing and querying
+ * only touch the few cells around the rect and cost close to O(1) for tooltip sized rects.
+ */
+class HoverViewGrid<T> {
+
+    private static final int CELL_SHIFT = 7; // 128 pixels cells
+    private static final int BUCKETS = 256;
+
+    static class Entry<T> {
+        final T payload;
+        int left;
+        int top;
+        int right;
+        int bottom;
+        boolean inserted;
+        int stamp;
+
+        Entry(T payload) {
+            this.payload = payload;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private final ArrayList<Entry<T>>[] mBuckets = (ArrayList<Entry<T>>[]) new ArrayList<?>[BUCKETS];
+    private int mStamp;
+    private int mSize;
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Insert an entry, or move it if it is already in the grid.
+     */
+    void update(Entry<T> entry, int left, int top, int right, int bottom) {
+        remove(entry);
+        entry.left = left;
+        entry.top = top;
+        entry.right = right;
+        entry.bottom = bottom;
+        entry.inserted = true;
+        mSize++;
+
+        int stamp = nextStamp();
+        for (int cy = top >> CELL_SHIFT; cy <= (bottom - 1) >> CELL_SHIFT; cy++) {
+            for (int cx = left >> CELL_SHIFT; cx <= (right - 1) >> CELL_SHIFT; cx++) {
+                int index = bucketIndex(cx, cy);
+                ArrayList<Entry<T>> bucket = mBuckets[index];
+                if (bucket == null) {
+                    bucket = new ArrayList<>(4);
+                    mBuckets[index] = bucket;
+                }
+                // several cells of the rect may share a bucket
+                if (entry.stamp != stamp || !bucket.contains(entry)) {
+                    bucket.add(entry);
+                }
+                entry.stamp = stamp;
+            }
+        }
+    }
+
+    boolean remove(Entry<T> entry) {
+        if (!entry.inserted) {
+            return false;
+        }
+        for (int cy = entry.top >> CELL_SHIFT; cy <= (entry.bottom - 1) >> CELL_SHIFT; cy++) {
+            for (int cx = entry.left >> CELL_SHIFT; cx <= (entry.right - 1) >> CELL_SHIFT; cx++) {
+                ArrayList<Entry<T>> bucket = mBuckets[bucketIndex(cx, cy)];
+                if (bucket != null) {
+                    bucket.remove(entry);
+                }
+            }
+        }
+        entry.inserted = false;
+        mSize--;
+        return true;
+    }
+
+    void clear() {
+        for (ArrayList<Entry<T>> bucket : mBuckets) {
+            if (bucket != null) {
+                for (int i = 0; i < bucket.size(); i++) {
+                    bucket.get(i).inserted = false;
+                }
+                bucket.clear();
+            }
+        }
+        mSize = 0;
+    }
+
+    /**
+     * @param exclude entry ignored by the query, usually the one being placed
+     * @return total area of the given rect covered by the other entries
+     */
+    long getOverlapArea(int left, int top, int right, int bottom, Entry<T> exclude) {
+        if (mSize == 0 || right <= left || bottom <= top) {
+            return 0;
+        }
+        long area = 0;
+        int stamp = nextStamp();
+        for (int cy = top >> CELL_SHIFT; cy <= (bottom - 1) >> CELL_SHIFT; cy++) {
+            for (int cx = left >> CELL_SHIFT; cx <= (right - 1) >> CELL_SHIFT; cx++) {
+                ArrayList<Entry<T>> bucket = mBuckets[bucketIndex(cx, cy)];
+                if (bucket == null) {
+                    continue;
+                }
+                for (int i = 0; i < bucket.size(); i++) {
+                    Entry<T> entry = bucket.get(i);
+                    if (entry == exclude || entry.stamp == stamp) {
+                        continue;
+                    }
+                    // count each entry once even when it covers several queried cells
+                    entry.stamp = stamp;
+                    int width = Math.min(right, entry.right) - Math.max(left, entry.left);
+                    int height = Math.min(bottom, entry.bottom) - Math.max(top, entry.top);
+                    if (width > 0 && height > 0) {
+                        area += (long) width * height;
+                    }
+                }
+            }
+        }
+        return area;
+    }
+
+    private int nextStamp() {
+        // 0 is the stamp of entries never visited
+        if (++mStamp == 0) {
+            mStamp = 1;
+        }
+        return mStamp;
+    }
+
+    private static int bucketIndex(int cx, int cy) {
+        return (cx * 73856093 ^ cy * 19349663) & (BUCKETS - 1);
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+Copyright 2017 Tomer Goldstein
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.tomergoldst.hoverview;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary min heap of the active hoverviews.
+ *
+ * The head is the next hoverview to evict: lowest priority first, and among the same
+ * priority the least recently shown. Each hoverview keeps its own heap index, so adding,
+ * removing and refreshing an entry are all O(log n).
+ */
+class HoverViewHeap {
+
+    private HoverView[] mHeap = new HoverView[8];
+    private int mSize;
+    private long mSequence;
+
+    int size() {
+        return mSize;
+    }
+
+    boolean contains(HoverView hoverView) {
+        int index = hoverView.mHeapIndex;
+        return index >= 0 && index < mSize && mHeap[index] == hoverView;
+    }
+
+    /**
+     * @return the hoverview to evict first, or null if the heap is empty
+     */
+    HoverView peek() {
+        return mSize > 0 ? mHeap[0] : null;
+    }
+
+    void add(HoverView hoverView) {
+        if (mSize == mHeap.length) {
+            mHeap = Arrays.copyOf(mHeap, mSize * 2);
+        }
+        hoverView.mShowSequence = ++mSequence;
+        hoverView.mHeapIndex = mSize;
+        mHeap[mSize++] = hoverView;
+        siftUp(hoverView.mHeapIndex);
+    }
+
+    /**
+     * Mark an hoverview as shown again, making it the most recently shown of its priority.
+     */
+    void touch(HoverView hoverView) {
+        if (contains(hoverView)) {
+            hoverView.mShowSequence = ++mSequence;
+            siftDown(hoverView.mHeapIndex);
+        }
+    }
+
+    boolean remove(HoverView hoverView) {
+        if (!contains(hoverView)) {
+            return false;
+        }
+        int index = hoverView.mHeapIndex;
+        HoverView last = mHeap[--mSize];
+        mHeap[mSize] = null;
+        hoverView.mHeapIndex = -1;
+        if (last != hoverView) {
+            mHeap[index] = last;
+            last.mHeapIndex = index;
+            siftDown(index);
+            siftUp(last.mHeapIndex);
+        }
+        return true;
+    }
+
+    void clear() {
+        for (int i = 0; i < mSize; i++) {
+            mHeap[i].mHeapIndex = -1;
+            mHeap[i] = null;
+        }
+        mSize = 0;
+    }
+
+    private void siftUp(int index) {
+        HoverView hoverView = mHeap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!evictsBefore(hoverView, mHeap[parent])) {
+                break;
+            }
+            move(mHeap[parent], index);
+            index = parent;
+        }
+        move(hoverView, index);
+    }
+
+    private void siftDown(int index) {
+        HoverView hoverView = mHeap[index];
+        int half = mSize >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < mSize && evictsBefore(mHeap[right], mHeap[child])) {
+                child = right;
+            }
+            if (!evictsBefore(mHeap[child], hoverView)) {
+                break;
+            }
+            move(mHeap[child], index);
+            index = child;
+        }
+        move(hoverView, index);
+    }
+
+    private void move(HoverView hoverView, int index) {
+        mHeap[index] = hoverView;
+        hoverView.mHeapIndex = index;
+    }
+
+    private static boolean evictsBefore(HoverView a, HoverView b) {
+        if (a.getPriority() != b.getPriority()) {
+            return a.getPriority() < b.getPriority();
+        }
+        return a.mShowSequence < b.mShowSequence;
+    }
+
+}
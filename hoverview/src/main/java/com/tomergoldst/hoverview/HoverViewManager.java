@@ -18,36 +18,227 @@ package com.tomergoldst.hoverview;
 
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
-import android.graphics.Point;
+import android.animation.ValueAnimator;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v4.view.ViewCompat;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.View;
+import android.view.ViewGroup;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
-public class HoverViewManager {
+public class HoverViewManager implements HoverViewRoot.Callback {
 
     private static final String TAG = HoverViewManager.class.getSimpleName();
 
     private static final int DEFAULT_ANIM_DURATION = 400;
 
+    // auto dismiss timers resolution and number of wheel slots (power of two)
+    private static final int TIMEOUT_TICK_MILLIS = 50;
+    private static final int TIMEOUT_WHEEL_SLOTS = 128;
+
+    @IntDef({DISMISS_REASON_USER, DISMISS_REASON_API, DISMISS_REASON_TIMEOUT, DISMISS_REASON_EVICTED,
+            DISMISS_REASON_ANCHOR_GONE})
+    public @interface DismissReason {}
+    public static final int DISMISS_REASON_USER = 0;
+    public static final int DISMISS_REASON_API = 1;
+    public static final int DISMISS_REASON_TIMEOUT = 2;
+    public static final int DISMISS_REASON_EVICTED = 3;
+    public static final int DISMISS_REASON_ANCHOR_GONE = 4;
+
+    @IntDef({LAYER_POLICY_NEVER, LAYER_POLICY_ALWAYS, LAYER_POLICY_AUTO})
+    public @interface LayerPolicy {}
+    public static final int LAYER_POLICY_NEVER = 0;
+    public static final int LAYER_POLICY_ALWAYS = 1;
+    public static final int LAYER_POLICY_AUTO = 2;
+
+    // smallest view area, in pixels, promoted to a hardware layer by LAYER_POLICY_AUTO
+    private static final int DEFAULT_LAYER_MIN_AREA = 256 * 256;
+
     // Parameter for managing view creation or reuse
-    private Map<Integer, HoverView> mHoverViewsMap = new HashMap<>();
+    private SparseArray<HoverView> mHoverViewsMap = new SparseArray<>();
+
+    // hoverviews grouped by the root layout they were added to
+    private Map<ViewGroup, HoverViewRoot> mRoots = new HashMap<>();
+
+    // active hoverviews ordered by eviction order, used to enforce mMaxActiveHoverViews
+    private final HoverViewHeap mActiveHoverViews = new HoverViewHeap();
+    private int mMaxActiveHoverViews;
+
+    @Nullable
+    private ShownRegistry mShownRegistry;
+    // show once hoverviews held back until the registry is loaded
+    private final List<HoverView> mShowOnceWaiting = new ArrayList<>();
+    private final Runnable mRegistryLoaded = new Runnable() {
+        @Override
+        public void run() {
+            // on the registry loading thread
+            mHandler.post(mShowWaiting);
+        }
+    };
+    private final Runnable mShowWaiting = new Runnable() {
+        @Override
+        public void run() {
+            showWaiting();
+        }
+    };
+
+    private boolean mTrackAnchors;
+    private boolean mAvoidCollisions;
+
+    // last lifecycle events, always on
+    private final FlightRecorder mFlightRecorder = new FlightRecorder(FlightRecorder.DEFAULT_CAPACITY);
+
+    // hoverviews whose text is being laid out in the background
+    private final List<PrecomputedTextTask> mTextTasks = new ArrayList<>();
 
     private int mAnimationDuration;
 
+    @LayerPolicy
+    private int mLayerPolicy = LAYER_POLICY_AUTO;
+    private int mLayerMinArea = DEFAULT_LAYER_MIN_AREA;
+
     @Nullable
     private HoverViewListener mListener;
 
     @NonNull
     private HoverViewAnimator mHoverViewAnimator;
 
+    // all auto dismiss timers of this manager share a single wheel ticking on the main looper
+    private final TimingWheel<HoverView> mTimeoutWheel =
+            new TimingWheel<>(TIMEOUT_TICK_MILLIS, TIMEOUT_WHEEL_SLOTS);
+    private final List<HoverView> mExpiredHoverViews = new ArrayList<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private boolean mTimeoutTickScheduled;
+    private long mTimeoutTickMillis;
+
+    private final Runnable mTimeoutTick = new Runnable() {
+        @Override
+        public void run() {
+            mTimeoutTickScheduled = false;
+            onTimeoutTick();
+        }
+    };
+
+    private final PrecomputedTextTask.Callback mTextCallback = new PrecomputedTextTask.Callback() {
+        @Override
+        public void onTextReady(PrecomputedTextTask task) {
+            HoverView hoverView = task.mHoverView;
+            finishTextTask(task);
+            task.applyText();
+            if (hoverView.getFallbackText() == null) {
+                showNow(hoverView);
+            } else if (hoverView.mShown) {
+                // the fallback text is replaced, measure the hoverview again and move the
+                // hoverviews stacked after it
+                placeHoverView(hoverView, true);
+                for (HoverView next = hoverView.mStackNext; next != null; next = next.mStackNext) {
+                    placeHoverView(next);
+                }
+            }
+        }
+
+        @Override
+        public void onTextDeadline(PrecomputedTextTask task) {
+            finishTextTask(task);
+            task.applyPlainText();
+            showNow(task.mHoverView);
+        }
+    };
+
+    private final BulkDismissAnimation.Callback mBulkDismissCallback = new BulkDismissAnimation.Callback() {
+        @Override
+        public void onBulkDismissEnd(BulkDismissAnimation batch) {
+            List<HoverView> hoverViews = batch.mHoverViews;
+            // remove the views without a layout pass each, then lay every root out once
+            for (int i = 0; i < hoverViews.size(); i++) {
+                HoverView hoverView = hoverViews.get(i);
+                ViewGroup rootView = hoverView.getRootView();
+                hoverView.getView().setVisibility(View.GONE);
+                rootView.removeViewInLayout(hoverView.getView());
+                if (hoverView.hasArrow()) {
+                    hoverView.mArrowView.setVisibility(View.GONE);
+                    rootView.removeViewInLayout(hoverView.mArrowView);
+                }
+                if (!mBulkDismissRoots.contains(rootView)) {
+                    mBulkDismissRoots.add(rootView);
+                }
+                mFlightRecorder.record(FlightRecorder.EVENT_ANIMATION_END, hoverView.mAnchorViewId,
+                        FlightRecorder.ANIMATION_POPOUT, 0);
+                endLayer(hoverView, FlightRecorder.ANIMATION_POPOUT);
+            }
+            for (int i = 0; i < mBulkDismissRoots.size(); i++) {
+                mBulkDismissRoots.get(i).requestLayout();
+                mBulkDismissRoots.get(i).invalidate();
+            }
+            mBulkDismissRoots.clear();
+
+            if (mListener instanceof HoverViewBatchListener) {
+                ((HoverViewBatchListener) mListener).onHoverViewsDismissed(
+                        Collections.unmodifiableList(hoverViews), batch.mReason);
+            } else {
+                for (int i = 0; i < hoverViews.size(); i++) {
+                    notifyDismissed(hoverViews.get(i), batch.mReason);
+                }
+            }
+        }
+    };
+    private final List<ViewGroup> mBulkDismissRoots = new ArrayList<>();
+
+    // a single click listener dismisses every hoverview
+    private final View.OnClickListener mDismissOnClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View view) {
+            dismiss(view, true);
+        }
+    };
+
     public interface HoverViewListener {
         void onHoverViewDismissed(View view, int anchorViewId, boolean byUser);
     }
 
+    /**
+     * Listener which is also told about hoverviews dismissed together by
+     * {@link #dismissAll(HoverViewFilter)} and the like, with a single call per batch.
+     */
+    public interface HoverViewBatchListener extends HoverViewReasonListener {
+        void onHoverViewsDismissed(List<HoverView> hoverViews, @DismissReason int reason);
+    }
+
+    /**
+     * Listener which is also told about hoverviews not shown because the active hoverviews
+     * limit was reached with higher priority hoverviews, see {@link #setMaxActiveHoverViews(int)}.
+     */
+    public interface HoverViewLimitListener extends HoverViewListener {
+        void onHoverViewRejected(HoverView hoverView);
+    }
+
+    public interface HoverViewFilter {
+        boolean accept(HoverView hoverView);
+    }
+
+    public interface HoverViewVisitor {
+        void visit(HoverView hoverView);
+    }
+
+    /**
+     * Listener which is also told why a hoverview was dismissed.
+     * When implemented, it is called instead of {@link HoverViewListener#onHoverViewDismissed(View, int, boolean)}.
+     */
+    public interface HoverViewReasonListener extends HoverViewListener {
+        void onHoverViewDismissed(View view, int anchorViewId, @DismissReason int reason);
+    }
+
     public HoverViewManager(){
         mAnimationDuration = DEFAULT_ANIM_DURATION;
         mHoverViewAnimator = new DefaultHoverViewAnimator();
@@ -66,14 +257,200 @@ public class HoverViewManager {
         mHoverViewAnimator = animator;
     }
 
+    /**
+     * Limit the number of hoverviews shown at the same time. Showing past the limit evicts the
+     * lowest priority hoverview, the least recently shown among equal priorities, and reports it
+     * with {@link #DISMISS_REASON_EVICTED}. An hoverview with a lower priority than all
+     * the active ones is not shown, {@link #show(HoverView)} returns null and a
+     * {@link HoverViewLimitListener} is told about it.
+     * @param max maximum number of active hoverviews, 0 for no limit
+     */
+    public void setMaxActiveHoverViews(int max) {
+        mMaxActiveHoverViews = max;
+        if (max > 0) {
+            while (mActiveHoverViews.size() > max) {
+                evict(mActiveHoverViews.peek());
+            }
+        }
+    }
+
+    /**
+     * Follow the anchor views of the shown hoverviews. An hoverview whose anchor is detached
+     * or GONE is dismissed with {@link #DISMISS_REASON_ANCHOR_GONE}, one whose anchor is
+     * invisible or scrolled out of sight is hidden without being dismissed and shown again,
+     * at the anchor new position, once the anchor is back.
+     * A single layout and scroll observer is used per root layout. Turning tracking off
+     * shows the hidden hoverviews again, placed at their anchor current position.
+     * @param trackAnchors true to track anchor views
+     */
+    public void setAnchorTrackingEnabled(boolean trackAnchors) {
+        mTrackAnchors = trackAnchors;
+        for (HoverViewRoot root : mRoots.values()) {
+            root.setTrackAnchors(trackAnchors);
+            if (!trackAnchors) {
+                resumeSuspended(root);
+            }
+        }
+    }
+
+    private void resumeSuspended(HoverViewRoot root) {
+        // in show order, so stacked hoverviews are placed after the ones they are stacked on
+        for (int i = 0; i < root.mHoverViews.size(); i++) {
+            HoverView hoverView = root.mHoverViews.get(i);
+            if (hoverView.mSuspended) {
+                setSuspended(hoverView, false);
+                placeHoverView(hoverView);
+            }
+        }
+    }
+
+    /**
+     * Place hoverviews so they do not overlap other hoverviews shown in the same root. When the
+     * requested position overlaps, the other positions are tried and the one overlapping the
+     * least is used. Rects of shown hoverviews are kept in a spatial grid per root, so a
+     * placement only looks at the hoverviews around it.
+     * @param avoidCollisions true to avoid overlapping other hoverviews
+     */
+    public void setCollisionAvoidanceEnabled(boolean avoidCollisions) {
+        mAvoidCollisions = avoidCollisions;
+        for (HoverViewRoot root : mRoots.values()) {
+            root.setAvoidCollisions(avoidCollisions);
+        }
+    }
+
+    /**
+     * Set the registry used by show once hoverviews. A show once hoverview is skipped if it
+     * was already shown. It is marked as shown once dismissed by the user, by its timeout or
+     * from code, {@link #clear()} and {@link #dismissAll()} included. An hoverview evicted
+     * by the active hoverviews limit or whose anchor view is gone was possibly not seen, it
+     * is not marked and can be shown again.
+     * The registry reads its ids in the background once created. A show once hoverview shown
+     * before it is loaded is held back and shown once it is loaded, unless it was already
+     * shown, create the registry early, e.g. with the manager, to avoid the delay.
+     * @param registry ShownRegistry
+     */
+    public void setShownRegistry(@Nullable ShownRegistry registry) {
+        mShownRegistry = registry;
+    }
+
+    /**
+     * Show an hoverview. An hoverview with a precomputed text and no fallback text is shown
+     * once its text is laid out, or once its text deadline passes.
+     * @param hoverView hoverview to show
+     * @return the hoverview view, null if it was not shown (already shown once, or rejected by
+     * the active hoverviews limit) or is waiting for its text or for the shown registry to load
+     */
     public View show(HoverView hoverView) {
+        // skip already shown hoverviews before any measure or layout work
+        if (hoverView.isShowOnce() && mShownRegistry != null) {
+            if (!mShownRegistry.isLoaded()) {
+                waitForRegistry(hoverView);
+                return null;
+            }
+            if (mShownRegistry.isShown(hoverView.getShowOnceId())) {
+                return null;
+            }
+        }
+
+        if (hoverView.hasPrecomputedText() && !hoverView.mTextApplied && !hoverView.mShown) {
+            if (hoverView.mTextTask == null) {
+                PrecomputedTextTask task = new PrecomputedTextTask(hoverView, mHandler, mTextCallback);
+                hoverView.mTextTask = task;
+                mTextTasks.add(task);
+                task.start(hoverView.getFallbackText() == null ? hoverView.getTextDeadline() : 0);
+            }
+            if (hoverView.getFallbackText() == null) {
+                return null;
+            }
+            hoverView.getTextView().setText(hoverView.getFallbackText());
+        }
+
+        return showNow(hoverView);
+    }
+
+    /**
+     * Hold a show once hoverview back until the registry knows whether it was shown.
+     */
+    private void waitForRegistry(HoverView hoverView) {
+        if (!mShowOnceWaiting.contains(hoverView)) {
+            mShowOnceWaiting.add(hoverView);
+        }
+        if (!mShownRegistry.runWhenLoaded(mRegistryLoaded)) {
+            // loaded meanwhile
+            mHandler.post(mShowWaiting);
+        }
+    }
+
+    private void showWaiting() {
+        // showing checks the registry again, and may hold an hoverview back again if another
+        // registry was set meanwhile
+        List<HoverView> waiting = new ArrayList<>(mShowOnceWaiting);
+        mShowOnceWaiting.clear();
+        for (int i = 0; i < waiting.size(); i++) {
+            show(waiting.get(i));
+        }
+    }
+
+    private void finishTextTask(PrecomputedTextTask task) {
+        mTextTasks.remove(task);
+        task.mHoverView.mTextTask = null;
+        task.mHoverView.mTextApplied = true;
+    }
+
+    private void cancelTextTask(PrecomputedTextTask task) {
+        task.cancel();
+        mTextTasks.remove(task);
+        task.mHoverView.mTextTask = null;
+    }
+
+    private View showNow(HoverView hoverView) {
         View view = create(hoverView);
         if (view == null) {
             return null;
         }
 
         // animate view visibility
-        mHoverViewAnimator.popup(view, mAnimationDuration).start();
+        HoverView shown = (HoverView) view.getTag(R.id.hoverview_entry);
+        ValueAnimator popup = mHoverViewAnimator.popup(view, mAnimationDuration);
+        if (shown.mPopupAnimatorListener == null) {
+            shown.mPopupAnimatorListener = new PopupAnimatorListener(shown);
+        }
+        // animators are reused per view, possibly by other hoverviews showing the same view,
+        // keep only the listener of this hoverview
+        List<Animator.AnimatorListener> listeners = popup.getListeners();
+        boolean added = false;
+        if (listeners != null) {
+            for (int i = listeners.size() - 1; i >= 0; i--) {
+                Animator.AnimatorListener listener = listeners.get(i);
+                if (listener == shown.mPopupAnimatorListener) {
+                    added = true;
+                } else if (listener instanceof PopupAnimatorListener) {
+                    popup.removeListener(listener);
+                }
+            }
+        }
+        if (!added) {
+            popup.addListener(shown.mPopupAnimatorListener);
+        }
+        mFlightRecorder.record(FlightRecorder.EVENT_ANIMATION_START, shown.mAnchorViewId,
+                FlightRecorder.ANIMATION_POPUP, 0);
+        beginLayer(shown, FlightRecorder.ANIMATION_POPUP);
+        popup.start();
+        shown.mPopupAnimator = popup;
+        if (hoverView.hasArrow() && view == hoverView.getView()) {
+            hoverView.mArrowPopupAnimator = mHoverViewAnimator.popup(hoverView.mArrowView, mAnimationDuration);
+            hoverView.mArrowPopupAnimator.start();
+        }
+        if (mTrackAnchors) {
+            // the popup made the view visible, hide it again if its anchor is out of sight
+            HoverViewRoot root = getRoot(shown.getRootView());
+            if (!isAnchorVisible(root, shown.getAnchorView())) {
+                shown.mSuspended = false;
+                setSuspended(shown, true);
+            } else {
+                setSuspended(shown, false);
+            }
+        }
 
         return view;
     }
@@ -90,61 +467,309 @@ public class HoverViewManager {
             return null;
         }
 
-        // only one hoverview is allowed near an anchor view at the same time, thus
-        // reuse hoverview if already exist
-        if (mHoverViewsMap.containsKey(hoverView.getAnchorView().getId())) {
-            return mHoverViewsMap.get(hoverView.getAnchorView().getId()).getView();
+        // unless stackable, only one hoverview is allowed near an anchor view at the same
+        // time, thus reuse hoverview if already exist
+        HoverView existing = mHoverViewsMap.get(hoverView.getAnchorView().getId());
+        if (hoverView.mShown || (existing != null && !hoverView.isStackable())) {
+            existing = hoverView.mShown ? hoverView : existing;
+            // showing again restarts the timeout of the visible hoverview
+            if (hoverView.getDismissTimeout() > 0) {
+                scheduleDismissTimeout(existing, hoverView.getDismissTimeout());
+            } else if (existing.mDismissTimer != null) {
+                // shown again without a timeout, keep it until dismissed
+                mTimeoutWheel.cancel(existing.mDismissTimer);
+            }
+            mActiveHoverViews.touch(existing);
+            mFlightRecorder.record(FlightRecorder.EVENT_SHOW, existing.mAnchorViewId, 1, 0);
+            return existing.getView();
+        }
+
+        if (!makeRoomFor(hoverView)) {
+            Log.w(TAG, "Unable to create a hoverview, active hoverviews limit reached with higher priorities");
+            if (mListener instanceof HoverViewLimitListener) {
+                ((HoverViewLimitListener) mListener).onHoverViewRejected(hoverView);
+            }
+            return null;
+        }
+
+        // stack after the hoverviews already shown near the anchor, eviction may have removed some
+        int anchorViewId = hoverView.getAnchorView().getId();
+        HoverView first = mHoverViewsMap.get(anchorViewId);
+        if (first != null) {
+            HoverViewStack.append(first, hoverView);
         }
 
         // init view parameters
         hoverView.getView().setVisibility(View.INVISIBLE);
 
-        // on RTL languages replace sides
-        if (UiUtils.isRtl()) {
-            switchHoverViewSidePosition(hoverView);
+        // add hoverview to root layout, the arrow goes below it
+        if (hoverView.hasArrow()) {
+            if (hoverView.mArrowView == null) {
+                hoverView.mArrowView = new ArrowView(hoverView.getRootView().getContext());
+            }
+            hoverView.mArrowView.setVisibility(View.INVISIBLE);
+            hoverView.getRootView().addView(hoverView.mArrowView);
         }
-
-        // add hoverview to root layout
         hoverView.getRootView().addView(hoverView.getView());
 
-        // find where to position the hoverview
-        Point point = ViewCoordinatesFinder.getCoordinates(hoverView);
-
-        // move hoverview to correct position
-        moveHoverViewToCorrectPosition(hoverView.getView(), point);
+        // find where to position the hoverview and move it there
+        placeHoverView(hoverView, true);
+        rememberAnchorState(getRoot(hoverView.getRootView()), hoverView);
 
         // set dismiss on click
-        hoverView.getView().setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View view) {
-                dismiss(view, true);
-            }
-        });
+        hoverView.getView().setOnClickListener(mDismissOnClickListener);
 
         // bind hoverview with anchorView id
-        int anchorViewId = hoverView.getAnchorView().getId();
-        hoverView.getView().setTag(anchorViewId);
+        hoverView.mShown = true;
+        hoverView.mAnchorViewId = anchorViewId;
+        hoverView.getView().setTag(R.id.hoverview_entry, hoverView);
 
-        // insert hoverview to map by 'anchorView' id
-        mHoverViewsMap.put(anchorViewId, hoverView);
+        // insert hoverview to map by 'anchorView' id, stacked ones are reached from the first
+        if (first == null) {
+            mHoverViewsMap.put(anchorViewId, hoverView);
+        }
+        getRoot(hoverView.getRootView()).add(hoverView);
+        mActiveHoverViews.add(hoverView);
+        mFlightRecorder.record(FlightRecorder.EVENT_SHOW, anchorViewId, 0, 0);
+
+        if (hoverView.getDismissTimeout() > 0) {
+            scheduleDismissTimeout(hoverView, hoverView.getDismissTimeout());
+        }
 
         return hoverView.getView();
 
     }
 
-    private void moveHoverViewToCorrectPosition(View view, Point p) {
-        Coordinates coordinates = new Coordinates(view);
-        int translationX = p.x - coordinates.left;
-        int translationY = p.y - coordinates.top;
-        view.setTranslationX(!UiUtils.isRtl() ? translationX : -translationX);
-        view.setTranslationY(translationY);
+    private void placeHoverView(HoverView hoverView) {
+        placeHoverView(hoverView, false);
+    }
+
+    /**
+     * @param added true if the hoverview was just added to its root and was never measured
+     */
+    private void placeHoverView(HoverView hoverView, boolean added) {
+        HoverViewRoot root = getRoot(hoverView.getRootView());
+        if (added) {
+            ViewCoordinatesFinder.placeNew(hoverView, root.isRtl(), root.mGrid);
+        } else {
+            ViewCoordinatesFinder.place(hoverView, root.isRtl(), root.mGrid);
+        }
+        mFlightRecorder.record(FlightRecorder.EVENT_PLACE, hoverView.getAnchorView().getId(),
+                hoverView.mPlacement.resolvedPosition, hoverView.mPlacement.width);
+        moveHoverViewToCorrectPosition(hoverView);
+        root.updateGrid(hoverView);
+    }
+
+    private void moveHoverViewToCorrectPosition(HoverView hoverView) {
+        // the root lays the views out, the translations move them to their placement
+        Placement placement = hoverView.mPlacement;
+        View view = hoverView.getView();
+        view.setTranslationX(placement.getTranslationX());
+        view.setTranslationY(placement.y);
+
+        if (hoverView.hasArrow()) {
+            ArrowView arrowView = hoverView.mArrowView;
+            arrowView.setArrow(hoverView.getArrowSize(), hoverView.getArrowColor(),
+                    placement.arrowDirection);
+            arrowView.setTranslationX(placement.getArrowTranslationX());
+            arrowView.setTranslationY(placement.arrowY);
+        }
+    }
+
+    /**
+     * Something in the root was laid out or scrolled, called at most once per frame. Only
+     * anchors whose location, size or visibility changed since the last check are tested
+     * against the visible area.
+     */
+    @Override
+    public void onRootAnchorsChanged(HoverViewRoot root) {
+        // in show order, so stacked hoverviews are placed after the ones they are stacked on
+        for (int i = 0; i < root.mHoverViews.size(); i++) {
+            HoverView hoverView = root.mHoverViews.get(i);
+            View anchor = hoverView.getAnchorView();
+
+            if (anchor.getWindowToken() == null || anchor.getVisibility() == View.GONE) {
+                // dismissing removes the hoverview from the root
+                dismiss(hoverView.getView(), DISMISS_REASON_ANCHOR_GONE);
+                i--;
+                continue;
+            }
+
+            anchor.getLocationOnScreen(root.mAnchorLocation);
+            boolean shown = anchor.isShown();
+            if (root.mAnchorLocation[0] == hoverView.mAnchorLeft && root.mAnchorLocation[1] == hoverView.mAnchorTop
+                    && anchor.getWidth() == hoverView.mAnchorWidth && anchor.getHeight() == hoverView.mAnchorHeight
+                    && shown == hoverView.mAnchorShown) {
+                continue;
+            }
+            rememberAnchorState(root, hoverView);
+
+            if (!shown || !anchor.getGlobalVisibleRect(root.mAnchorVisibleRect)) {
+                setSuspended(hoverView, true);
+            } else {
+                setSuspended(hoverView, false);
+                placeHoverView(hoverView);
+            }
+        }
+    }
+
+    private void rememberAnchorState(HoverViewRoot root, HoverView hoverView) {
+        View anchor = hoverView.getAnchorView();
+        anchor.getLocationOnScreen(root.mAnchorLocation);
+        hoverView.mAnchorLeft = root.mAnchorLocation[0];
+        hoverView.mAnchorTop = root.mAnchorLocation[1];
+        hoverView.mAnchorWidth = anchor.getWidth();
+        hoverView.mAnchorHeight = anchor.getHeight();
+        hoverView.mAnchorShown = anchor.isShown();
+    }
+
+    private static boolean isAnchorVisible(HoverViewRoot root, View anchor) {
+        return anchor.isShown() && anchor.getGlobalVisibleRect(root.mAnchorVisibleRect);
+    }
+
+    private void setSuspended(HoverView hoverView, boolean suspended) {
+        if (hoverView.mSuspended == suspended) {
+            return;
+        }
+        hoverView.mSuspended = suspended;
+        // invisible views are skipped entirely when the root draws
+        int visibility = suspended ? View.INVISIBLE : View.VISIBLE;
+        hoverView.getView().setVisibility(visibility);
+        if (hoverView.hasArrow()) {
+            hoverView.mArrowView.setVisibility(visibility);
+        }
+        // a suspended hoverview does not push the others away
+        getRoot(hoverView.getRootView()).updateGrid(hoverView);
+    }
+
+    private boolean makeRoomFor(HoverView hoverView) {
+        if (mMaxActiveHoverViews <= 0) {
+            return true;
+        }
+        while (mActiveHoverViews.size() >= mMaxActiveHoverViews) {
+            HoverView lowest = mActiveHoverViews.peek();
+            if (hoverView.getPriority() < lowest.getPriority()) {
+                return false;
+            }
+            evict(lowest);
+        }
+        return true;
+    }
+
+    private void evict(HoverView hoverView) {
+        if (!dismiss(hoverView.getView(), DISMISS_REASON_EVICTED)) {
+            // never keep evicting the same entry
+            mActiveHoverViews.remove(hoverView);
+        }
+    }
+
+    private HoverViewRoot getRoot(ViewGroup rootView) {
+        HoverViewRoot root = mRoots.get(rootView);
+        if (root == null) {
+            root = new HoverViewRoot(rootView, this);
+            root.setTrackAnchors(mTrackAnchors);
+            root.setAvoidCollisions(mAvoidCollisions);
+            mRoots.put(rootView, root);
+        }
+        return root;
+    }
+
+    private void removeFromRoot(HoverView hoverView) {
+        // an empty root stops listening but stays in the map, so showing on it again
+        // does not allocate, roots are released on clear()
+        HoverViewRoot root = mRoots.get(hoverView.getRootView());
+        if (root != null) {
+            root.remove(hoverView);
+        }
+    }
+
+    /**
+     * Root size changed (rotation, multi window resize etc.), place the shown hoverviews again
+     * in place. Called right after the layout pass which resized the root. Cached measurements
+     * are reused, a view is measured again only if its width constraint changed, and running
+     * animations are left untouched.
+     */
+    @Override
+    public void onRootResized(HoverViewRoot root) {
+        if (root.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < root.mHoverViews.size(); i++) {
+            HoverView hoverView = root.mHoverViews.get(i);
+            placeHoverView(hoverView);
+        }
+    }
+
+    /**
+     * Recorder of the last show, placement, dismiss and animation events of this manager,
+     * dump it when investigating a misplaced or stuck hoverview.
+     * @return flight recorder
+     */
+    public FlightRecorder getFlightRecorder() {
+        return mFlightRecorder;
+    }
+
+    /**
+     * Choose when hoverviews are rendered to a hardware layer while they pop up or out, so
+     * the content is not drawn again on every frame. The original layer type is restored
+     * once the animation ends, and every decision is recorded in the flight recorder.
+     * {@link #LAYER_POLICY_AUTO}, the default, only promotes hardware accelerated views with
+     * overlapping content and an area of at least {@code minArea} pixels.
+     * @param policy layer policy
+     * @param minArea smallest view area promoted by {@link #LAYER_POLICY_AUTO}
+     */
+    public void setHardwareLayerPolicy(@LayerPolicy int policy, int minArea) {
+        mLayerPolicy = policy;
+        mLayerMinArea = minArea;
+    }
+
+    public void setHardwareLayerPolicy(@LayerPolicy int policy) {
+        setHardwareLayerPolicy(policy, DEFAULT_LAYER_MIN_AREA);
+    }
+
+    /**
+     * @param animation {@link FlightRecorder#ANIMATION_POPUP} or {@link FlightRecorder#ANIMATION_POPOUT}
+     */
+    private void beginLayer(HoverView hoverView, int animation) {
+        if (hoverView.mLayerPromoted) {
+            // e.g. dismissed while popping up, the pop-out takes the layer over
+            hoverView.mLayerOwner = animation;
+            return;
+        }
+        View view = hoverView.getView();
+        // the view may not be laid out yet, its placement has its size
+        int area = hoverView.mPlacement.width * hoverView.mPlacement.height;
+        boolean promote;
+        switch (mLayerPolicy) {
+            case LAYER_POLICY_ALWAYS:
+                promote = true;
+                break;
+            case LAYER_POLICY_AUTO:
+                promote = area >= mLayerMinArea && view.isHardwareAccelerated()
+                        && ViewCompat.hasOverlappingRendering(view);
+                break;
+            case LAYER_POLICY_NEVER:
+            default:
+                promote = false;
+                break;
+        }
+        if (promote && view.getLayerType() != View.LAYER_TYPE_HARDWARE) {
+            hoverView.mLayerPromoted = true;
+            hoverView.mLayerOwner = animation;
+            hoverView.mSavedLayerType = view.getLayerType();
+            view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        }
+        mFlightRecorder.record(FlightRecorder.EVENT_LAYER, hoverView.getAnchorView().getId(),
+                promote ? 1 : 0, area);
     }
 
-    private void switchHoverViewSidePosition(HoverView hoverView) {
-        if (hoverView.positionedLeftTo()) {
-            hoverView.setPosition(HoverView.POSITION_RIGHT_TO);
-        } else if (hoverView.positionedRightTo()) {
-            hoverView.setPosition(HoverView.POSITION_LEFT_TO);
+    /**
+     * Restore the layer type, unless another animation took the layer over.
+     */
+    private void endLayer(HoverView hoverView, int animation) {
+        if (hoverView.mLayerPromoted && hoverView.mLayerOwner == animation) {
+            hoverView.mLayerPromoted = false;
+            hoverView.getView().setLayerType(hoverView.mSavedLayerType, null);
         }
     }
 
@@ -152,54 +777,414 @@ public class HoverViewManager {
         mAnimationDuration = duration;
     }
 
+    /**
+     * Dismiss a shown hoverview, including one hidden while its anchor view is out of sight.
+     * The view visibility is not checked, use {@link #isVisible(View)} first to only dismiss
+     * an hoverview the user can see.
+     * @param view hoverview view
+     * @param byUser true if the user asked for it
+     * @return true if the hoverview was shown and is now dismissed
+     */
     public boolean dismiss(View view, boolean byUser) {
-        if (view != null && isVisible(view)) {
-            int key = (int) view.getTag();
-            HoverView hoverView = mHoverViewsMap.get(key);
-            mHoverViewsMap.remove(key);
-            animateDismiss(hoverView, byUser);
+        return dismiss(view, byUser ? DISMISS_REASON_USER : DISMISS_REASON_API);
+    }
+
+    private boolean dismiss(View view, @DismissReason int reason) {
+        if (view != null) {
+            HoverView hoverView = (HoverView) view.getTag(R.id.hoverview_entry);
+            if (hoverView == null || !detach(hoverView, reason)) {
+                return false;
+            }
+            animateDismiss(hoverView, reason);
             return true;
         }
         return false;
     }
 
+    /**
+     * Remove a shown hoverview from the manager, its view stays in the root until the
+     * dismiss animation ends.
+     * @return false if the hoverview is not shown
+     */
+    private boolean detach(HoverView hoverView, @DismissReason int reason) {
+        // a suspended hoverview is invisible but still shown, so check the registry only
+        if (!hoverView.mShown) {
+            return false;
+        }
+        hoverView.mShown = false;
+        hoverView.mDismissReason = reason;
+        mFlightRecorder.record(FlightRecorder.EVENT_DISMISS, hoverView.mAnchorViewId, reason, 0);
+        removeFromStack(hoverView);
+        removeFromRoot(hoverView);
+        mActiveHoverViews.remove(hoverView);
+        hoverView.mSuspended = false;
+        if (hoverView.isShowOnce() && mShownRegistry != null
+                && reason != DISMISS_REASON_EVICTED && reason != DISMISS_REASON_ANCHOR_GONE) {
+            mShownRegistry.markShown(hoverView.getShowOnceId());
+        }
+        if (hoverView.mDismissTimer != null) {
+            mTimeoutWheel.cancel(hoverView.mDismissTimer);
+        }
+        // shown with its fallback text, the precomputed text is not needed anymore
+        if (hoverView.mTextTask != null) {
+            cancelTextTask(hoverView.mTextTask);
+        }
+        return true;
+    }
+
+    /**
+     * @deprecated boxes the anchor view id, use {@link #dismiss(int)}
+     */
+    @Deprecated
     public boolean dismiss(Integer key) {
-        return mHoverViewsMap.containsKey(key) && dismiss(mHoverViewsMap.get(key).getView(), false);
+        return dismiss(key.intValue());
     }
 
-    public View find(Integer key) {
-        if (mHoverViewsMap.containsKey(key)) {
-            return mHoverViewsMap.get(key).getView();
+    /**
+     * Dismiss all the hoverviews shown near an anchor view.
+     * @param key anchor view id
+     * @return true if an hoverview was dismissed
+     */
+    public boolean dismiss(int key) {
+        // hoverviews still waiting for their text or the registry are not shown, just drop them
+        for (int i = mTextTasks.size() - 1; i >= 0; i--) {
+            PrecomputedTextTask task = mTextTasks.get(i);
+            if (!task.mHoverView.mShown && task.mHoverView.getAnchorView().getId() == key) {
+                cancelTextTask(task);
+            }
+        }
+        for (int i = mShowOnceWaiting.size() - 1; i >= 0; i--) {
+            if (mShowOnceWaiting.get(i).getAnchorView().getId() == key) {
+                mShowOnceWaiting.remove(i);
+            }
+        }
+
+        HoverView hoverView = mHoverViewsMap.get(key);
+        if (hoverView == null) {
+            return false;
+        }
+        // dismiss from the last one, so the others are not moved on the way
+        while (hoverView.mStackNext != null) {
+            hoverView = hoverView.mStackNext;
+        }
+        boolean dismissed = false;
+        while (hoverView != null) {
+            HoverView previous = hoverView.mStackPrevious;
+            dismissed |= dismiss(hoverView.getView(), false);
+            hoverView = previous;
+        }
+        return dismissed;
+    }
+
+    private void removeFromStack(HoverView hoverView) {
+        HoverView next = hoverView.mStackNext;
+        // the next hoverview becomes the first one, the others follow where it is placed
+        boolean firstRemoved = hoverView.mStackPrevious == null;
+        HoverView first = HoverViewStack.remove(mHoverViewsMap.get(hoverView.mAnchorViewId), hoverView);
+        if (first == null) {
+            mHoverViewsMap.remove(hoverView.mAnchorViewId);
+        } else {
+            mHoverViewsMap.put(hoverView.mAnchorViewId, first);
         }
-        return null;
+
+        // only the hoverviews stacked after the removed one move, unless dismissed with it
+        for (HoverView moved = next; moved != null; moved = moved.mStackNext) {
+            if (!moved.mInBatch
+                    && (firstRemoved || moved.mPlacement.position == hoverView.mPlacement.position)) {
+                placeHoverView(moved);
+            }
+        }
+    }
+
+    private void scheduleDismissTimeout(HoverView hoverView, long timeout) {
+        if (hoverView.mDismissTimer == null) {
+            hoverView.mDismissTimer = new TimingWheel.Timer<>(hoverView);
+        }
+        mTimeoutWheel.schedule(hoverView.mDismissTimer, SystemClock.uptimeMillis(), timeout);
+        scheduleTimeoutTick();
+    }
+
+    /**
+     * Wake up when the earliest timer expires, rather than on every tick of the wheel.
+     */
+    private void scheduleTimeoutTick() {
+        long deadline = mTimeoutWheel.getNextDeadlineMillis();
+        // a tick already scheduled earlier finds nothing expired and schedules the next one
+        if (deadline < 0 || (mTimeoutTickScheduled && mTimeoutTickMillis <= deadline)) {
+            return;
+        }
+        mHandler.removeCallbacks(mTimeoutTick);
+        mTimeoutTickScheduled = true;
+        mTimeoutTickMillis = deadline;
+        mHandler.postAtTime(mTimeoutTick, deadline);
+    }
+
+    private void onTimeoutTick() {
+        // all timers expiring on this tick are dismissed together, a single one goes through
+        // the per view animators which are reused and do not allocate
+        int expired = mTimeoutWheel.advance(SystemClock.uptimeMillis(), mExpiredHoverViews);
+        if (expired == 1) {
+            dismiss(mExpiredHoverViews.get(0).getView(), DISMISS_REASON_TIMEOUT);
+        } else if (expired > 1) {
+            // mark the whole batch first, a stack head may expire before its followers and
+            // they should pop out where they are
+            for (int i = 0; i < mExpiredHoverViews.size(); i++) {
+                mExpiredHoverViews.get(i).mInBatch = true;
+            }
+            BulkDismissAnimation batch = null;
+            for (int i = 0; i < mExpiredHoverViews.size(); i++) {
+                HoverView hoverView = mExpiredHoverViews.get(i);
+                if (detach(hoverView, DISMISS_REASON_TIMEOUT)) {
+                    batch = addToBatch(batch, hoverView, DISMISS_REASON_TIMEOUT);
+                }
+            }
+            for (int i = 0; i < mExpiredHoverViews.size(); i++) {
+                mExpiredHoverViews.get(i).mInBatch = false;
+            }
+            startBulkDismiss(batch);
+        }
+        mExpiredHoverViews.clear();
+
+        scheduleTimeoutTick();
+    }
+
+    /**
+     * @deprecated boxes the anchor view id, use {@link #find(int)}
+     */
+    @Deprecated
+    public View find(Integer key) {
+        return find(key.intValue());
+    }
+
+    /**
+     * @param key anchor view id
+     * @return the view of the first hoverview shown near the anchor view, null if none is shown
+     */
+    public View find(int key) {
+        HoverView hoverView = mHoverViewsMap.get(key);
+        return hoverView != null ? hoverView.getView() : null;
     }
 
     public boolean findAndDismiss(final View anchorView) {
-        View view = find(anchorView.getId());
-        return view != null && dismiss(view, false);
+        return dismiss(anchorView.getId());
     }
 
     public void clear() {
-        if (!mHoverViewsMap.isEmpty()) {
-            for (Map.Entry<Integer, HoverView> entry : mHoverViewsMap.entrySet()) {
-                dismiss(entry.getValue().getView(), false);
-            }
+        dismissAll();
+        for (int i = mTextTasks.size() - 1; i >= 0; i--) {
+            cancelTextTask(mTextTasks.get(i));
         }
+        mShowOnceWaiting.clear();
         mHoverViewsMap.clear();
+        mRoots.clear();
+        mActiveHoverViews.clear();
     }
 
-    private void animateDismiss(final HoverView hoverView, final boolean byUser) {
-        mHoverViewAnimator.popout(hoverView.getView(), mAnimationDuration, new AnimatorListenerAdapter() {
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                super.onAnimationEnd(animation);
-                hoverView.getRootView().removeView(hoverView.getView());
-                if (mListener != null){
-                    mListener.onHoverViewDismissed(hoverView.getView(),
-                            (Integer) hoverView.getView().getTag(), byUser);
-                }
+    /**
+     * Dismiss the hoverviews shown in a root layout, e.g. a dialog or a bottom sheet being
+     * closed. Only the hoverviews of that root are visited.
+     * @param rootView root layout
+     */
+    public void clear(ViewGroup rootView) {
+        for (int i = mTextTasks.size() - 1; i >= 0; i--) {
+            PrecomputedTextTask task = mTextTasks.get(i);
+            if (!task.mHoverView.mShown && task.mHoverView.getRootView() == rootView) {
+                cancelTextTask(task);
+            }
+        }
+        for (int i = mShowOnceWaiting.size() - 1; i >= 0; i--) {
+            if (mShowOnceWaiting.get(i).getRootView() == rootView) {
+                mShowOnceWaiting.remove(i);
+            }
+        }
+        dismissAll(rootView);
+        mRoots.remove(rootView);
+    }
+
+    /**
+     * Dismiss all the shown hoverviews together, see {@link #dismissAll(HoverViewFilter)}.
+     * @return true if an hoverview was dismissed
+     */
+    public boolean dismissAll() {
+        BulkDismissAnimation batch = null;
+        for (HoverViewRoot root : mRoots.values()) {
+            batch = collect(root, null, batch);
+        }
+        return startBulkDismiss(batch);
+    }
+
+    /**
+     * Dismiss the hoverviews shown in a root layout together, see
+     * {@link #dismissAll(HoverViewFilter)}.
+     * @param rootView root layout
+     * @return true if an hoverview was dismissed
+     */
+    public boolean dismissAll(ViewGroup rootView) {
+        HoverViewRoot root = mRoots.get(rootView);
+        return root != null && startBulkDismiss(collect(root, null, null));
+    }
+
+    /**
+     * Dismiss the shown hoverviews accepted by a filter together. All of them pop out through
+     * a single animation, are removed from their roots with a single layout pass per root,
+     * and are reported at once to a {@link HoverViewBatchListener}. When a custom
+     * {@link HoverViewAnimator} is set, each hoverview pops out through it instead.
+     * @param filter selects the hoverviews to dismiss
+     * @return true if an hoverview was dismissed
+     */
+    public boolean dismissAll(@NonNull HoverViewFilter filter) {
+        BulkDismissAnimation batch = null;
+        for (HoverViewRoot root : mRoots.values()) {
+            batch = collect(root, filter, batch);
+        }
+        return startBulkDismiss(batch);
+    }
+
+    /**
+     * Detach the hoverviews of a root accepted by the filter and add them to the batch.
+     * @return the batch, created on the first detached hoverview
+     */
+    private BulkDismissAnimation collect(HoverViewRoot root, @Nullable HoverViewFilter filter,
+                                         @Nullable BulkDismissAnimation batch) {
+        // from the most recently shown, so stacked hoverviews are not moved on the way
+        for (int i = root.mHoverViews.size() - 1; i >= 0; i--) {
+            HoverView hoverView = root.mHoverViews.get(i);
+            if ((filter == null || filter.accept(hoverView)) && detach(hoverView, DISMISS_REASON_API)) {
+                batch = addToBatch(batch, hoverView, DISMISS_REASON_API);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Add a detached hoverview to the batch.
+     * @return the batch, created on the first hoverview
+     */
+    private BulkDismissAnimation addToBatch(@Nullable BulkDismissAnimation batch, HoverView hoverView,
+                                            @DismissReason int reason) {
+        if (batch == null) {
+            batch = new BulkDismissAnimation(reason, mBulkDismissCallback);
+        }
+        batch.add(hoverView);
+        // a popup still running would fight the pop-out over the view alpha and scale
+        cancelIfRunning(hoverView.mPopupAnimator);
+        cancelIfRunning(hoverView.mArrowPopupAnimator);
+        mFlightRecorder.record(FlightRecorder.EVENT_ANIMATION_START, hoverView.mAnchorViewId,
+                FlightRecorder.ANIMATION_POPOUT, 0);
+        beginLayer(hoverView, FlightRecorder.ANIMATION_POPOUT);
+        return batch;
+    }
+
+    private static void cancelIfRunning(@Nullable ValueAnimator animator) {
+        if (animator != null && animator.isRunning()) {
+            animator.cancel();
+        }
+    }
+
+    private boolean startBulkDismiss(@Nullable BulkDismissAnimation batch) {
+        if (batch == null) {
+            return false;
+        }
+        if (mHoverViewAnimator instanceof DefaultHoverViewAnimator) {
+            batch.start(mAnimationDuration);
+        } else {
+            // keep the pop-out of a custom animator, the batch still ends with a single callback
+            batch.start(mHoverViewAnimator, mAnimationDuration);
+        }
+        return true;
+    }
+
+    /**
+     * @param rootView root layout
+     * @return number of hoverviews shown in the root layout
+     */
+    public int count(ViewGroup rootView) {
+        HoverViewRoot root = mRoots.get(rootView);
+        return root != null ? root.mHoverViews.size() : 0;
+    }
+
+    /**
+     * Visit the hoverviews shown in a root layout, from the most recently shown. The visitor
+     * may dismiss the visited hoverview.
+     * @param rootView root layout
+     * @param visitor called for each hoverview
+     */
+    public void forEach(ViewGroup rootView, HoverViewVisitor visitor) {
+        HoverViewRoot root = mRoots.get(rootView);
+        if (root == null) {
+            return;
+        }
+        for (int i = root.mHoverViews.size() - 1; i >= 0; i--) {
+            if (i < root.mHoverViews.size()) {
+                visitor.visit(root.mHoverViews.get(i));
+            }
+        }
+    }
+
+    private void animateDismiss(HoverView hoverView, @DismissReason int reason) {
+        // the end listener is created once per hoverview and reused when it is shown again
+        if (hoverView.mDismissAnimatorListener == null) {
+            hoverView.mDismissAnimatorListener = new DismissAnimatorListener(hoverView);
+        }
+        mFlightRecorder.record(FlightRecorder.EVENT_ANIMATION_START, hoverView.mAnchorViewId,
+                FlightRecorder.ANIMATION_POPOUT, 0);
+        beginLayer(hoverView, FlightRecorder.ANIMATION_POPOUT);
+        mHoverViewAnimator.popout(hoverView.getView(), mAnimationDuration,
+                hoverView.mDismissAnimatorListener).start();
+        if (hoverView.hasArrow()) {
+            mHoverViewAnimator.popout(hoverView.mArrowView, mAnimationDuration, null).start();
+        }
+    }
+
+    private class DismissAnimatorListener extends AnimatorListenerAdapter {
+
+        private final HoverView mHoverView;
+
+        DismissAnimatorListener(HoverView hoverView) {
+            mHoverView = hoverView;
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            super.onAnimationEnd(animation);
+            mFlightRecorder.record(FlightRecorder.EVENT_ANIMATION_END, mHoverView.mAnchorViewId,
+                    FlightRecorder.ANIMATION_POPOUT, 0);
+            endLayer(mHoverView, FlightRecorder.ANIMATION_POPOUT);
+            mHoverView.getRootView().removeView(mHoverView.getView());
+            if (mHoverView.hasArrow()) {
+                mHoverView.getRootView().removeView(mHoverView.mArrowView);
             }
-        }).start();
+            notifyDismissed(mHoverView, mHoverView.mDismissReason);
+        }
+    }
+
+    private class PopupAnimatorListener extends AnimatorListenerAdapter {
+
+        private final HoverView mHoverView;
+
+        PopupAnimatorListener(HoverView hoverView) {
+            mHoverView = hoverView;
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            super.onAnimationEnd(animation);
+            // called on cancel too, do not keep the hoverview reachable from the reused animator
+            animation.removeListener(this);
+            mFlightRecorder.record(FlightRecorder.EVENT_ANIMATION_END, mHoverView.mAnchorViewId,
+                    FlightRecorder.ANIMATION_POPUP, 0);
+            endLayer(mHoverView, FlightRecorder.ANIMATION_POPUP);
+        }
+    }
+
+    private void notifyDismissed(HoverView hoverView, @DismissReason int reason) {
+        if (mListener instanceof HoverViewReasonListener) {
+            ((HoverViewReasonListener) mListener).onHoverViewDismissed(hoverView.getView(),
+                    hoverView.mAnchorViewId, reason);
+        } else if (mListener != null) {
+            mListener.onHoverViewDismissed(hoverView.getView(),
+                    hoverView.mAnchorViewId, reason == DISMISS_REASON_USER);
+        }
     }
 
     public boolean isVisible(View view) {
@@ -0,0 +1,233 @@
+/*
+Copyright 2017 Tomer Goldstein
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.tomergoldst.hoverview;
+
+import android.graphics.Rect;
+import android.os.Build;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hoverviews shown in a single root layout.
+ *
+ * A root listens to its own layout changes only while it holds hoverviews and reports
+ * size changes, so the hoverviews can be placed again. When anchor tracking is on, the root
+ * also holds the single global layout and scroll observer shared by all of its hoverviews.
+ * Roots are independent shards of a manager, work on one root never visits the others.
+ */
+class HoverViewRoot implements View.OnLayoutChangeListener,
+        ViewTreeObserver.OnGlobalLayoutListener, ViewTreeObserver.OnScrollChangedListener {
+
+    interface Callback {
+        void onRootResized(HoverViewRoot root);
+
+        void onRootAnchorsChanged(HoverViewRoot root);
+    }
+
+    final ViewGroup mRootView;
+    final List<HoverView> mHoverViews = new ArrayList<>();
+    private final Callback mCallback;
+
+    // anchor location snapshot buffers of the anchor tracking of this root
+    final int[] mAnchorLocation = new int[2];
+    final Rect mAnchorVisibleRect = new Rect();
+
+    // layout direction of the root, followed on layout while the root holds hoverviews
+    private boolean mRtl;
+
+    // rects of the shown hoverviews, null unless collision avoidance is on
+    HoverViewGrid<HoverView> mGrid;
+    private final int[] mBounds = new int[4];
+
+    private boolean mTrackAnchors;
+    // anchors are checked at most once per frame, however many scroll and layout events came
+    private boolean mAnchorsCheckPending;
+    private final Runnable mAnchorsCheck = new Runnable() {
+        @Override
+        public void run() {
+            mAnchorsCheckPending = false;
+            mCallback.onRootAnchorsChanged(HoverViewRoot.this);
+        }
+    };
+    // resize handled after the layout pass, placing may change the hoverviews layout params
+    private boolean mResizePending;
+    private final Runnable mResize = new Runnable() {
+        @Override
+        public void run() {
+            mResizePending = false;
+            mCallback.onRootResized(HoverViewRoot.this);
+        }
+    };
+    // observer the listeners were added to, a view tree observer is replaced on attach
+    private ViewTreeObserver mObserver;
+
+    HoverViewRoot(ViewGroup rootView, Callback callback) {
+        mRootView = rootView;
+        mCallback = callback;
+    }
+
+    void add(HoverView hoverView) {
+        if (mHoverViews.isEmpty()) {
+            mRootView.addOnLayoutChangeListener(this);
+            if (mTrackAnchors) {
+                addObserver();
+            }
+        }
+        mHoverViews.add(hoverView);
+    }
+
+    /**
+     * @return true if the root holds no more hoverviews
+     */
+    boolean remove(HoverView hoverView) {
+        if (mGrid != null && hoverView.mGridEntry != null) {
+            mGrid.remove(hoverView.mGridEntry);
+        }
+        if (mHoverViews.remove(hoverView) && mHoverViews.isEmpty()) {
+            mRootView.removeOnLayoutChangeListener(this);
+            removeObserver();
+            if (mResizePending) {
+                mResizePending = false;
+                mRootView.removeCallbacks(mResize);
+            }
+        }
+        return mHoverViews.isEmpty();
+    }
+
+    void setTrackAnchors(boolean trackAnchors) {
+        mTrackAnchors = trackAnchors;
+        if (trackAnchors && !mHoverViews.isEmpty()) {
+            addObserver();
+        } else if (!trackAnchors) {
+            removeObserver();
+        }
+    }
+
+    void setAvoidCollisions(boolean avoidCollisions) {
+        if (avoidCollisions && mGrid == null) {
+            mGrid = new HoverViewGrid<>();
+            for (int i = 0; i < mHoverViews.size(); i++) {
+                updateGrid(mHoverViews.get(i));
+            }
+        } else if (!avoidCollisions && mGrid != null) {
+            mGrid.clear();
+            mGrid = null;
+        }
+    }
+
+    /**
+     * Record the current placement of an hoverview, its arrow included, in the collision grid.
+     * A suspended hoverview is invisible and left out of the grid.
+     */
+    void updateGrid(HoverView hoverView) {
+        if (mGrid == null) {
+            return;
+        }
+        if (hoverView.mSuspended) {
+            if (hoverView.mGridEntry != null) {
+                mGrid.remove(hoverView.mGridEntry);
+            }
+            return;
+        }
+        if (hoverView.mGridEntry == null) {
+            hoverView.mGridEntry = new HoverViewGrid.Entry<>(hoverView);
+        }
+        hoverView.mPlacement.writeBounds(mBounds);
+        mGrid.update(hoverView.mGridEntry, mBounds[0], mBounds[1], mBounds[2], mBounds[3]);
+    }
+
+    private void addObserver() {
+        if (mObserver != null) {
+            return;
+        }
+        mObserver = mRootView.getViewTreeObserver();
+        mObserver.addOnGlobalLayoutListener(this);
+        mObserver.addOnScrollChangedListener(this);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void removeObserver() {
+        if (mObserver == null) {
+            return;
+        }
+        ViewTreeObserver observer = mObserver.isAlive() ? mObserver : mRootView.getViewTreeObserver();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            observer.removeOnGlobalLayoutListener(this);
+        } else {
+            observer.removeGlobalOnLayoutListener(this);
+        }
+        observer.removeOnScrollChangedListener(this);
+        mObserver = null;
+        if (mAnchorsCheckPending) {
+            mAnchorsCheckPending = false;
+            mRootView.removeCallbacks(mAnchorsCheck);
+        }
+    }
+
+    /**
+     * @return true if the root is laid out right to left
+     */
+    boolean isRtl() {
+        // not listening to layout changes while empty, read it again
+        if (mHoverViews.isEmpty()) {
+            mRtl = UiUtils.isRtl(mRootView);
+        }
+        return mRtl;
+    }
+
+    boolean isEmpty() {
+        return mHoverViews.isEmpty();
+    }
+
+    @Override
+    public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                               int oldLeft, int oldTop, int oldRight, int oldBottom) {
+        // a layout direction change, e.g. a new locale, lays the root out again
+        boolean rtl = UiUtils.isRtl(mRootView);
+        boolean directionChanged = rtl != mRtl;
+        mRtl = rtl;
+        // a layout params change requests a layout, which is not allowed during this one
+        if ((directionChanged || right - left != oldRight - oldLeft || bottom - top != oldBottom - oldTop)
+                && !mResizePending) {
+            mResizePending = true;
+            mRootView.post(mResize);
+        }
+    }
+
+    @Override
+    public void onGlobalLayout() {
+        scheduleAnchorsCheck();
+    }
+
+    @Override
+    public void onScrollChanged() {
+        scheduleAnchorsCheck();
+    }
+
+    private void scheduleAnchorsCheck() {
+        if (!mAnchorsCheckPending) {
+            mAnchorsCheckPending = true;
+            ViewCompat.postOnAnimation(mRootView, mAnchorsCheck);
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+Copyright 2017 Tomer Goldstein
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.tomergoldst.hoverview;
+
+/**
+ * Stacking of several hoverviews shown near the same anchor view.
+ *
+ * Hoverviews of an anchor form a linked list in show order, the first one is the one
+ * registered by anchor id. Each hoverview occupies an interval along its position, starting
+ * where the previous hoverview with the same position ends, so hoverviews never overlap.
+ * Removing an hoverview only moves the ones after it. When collision avoidance moves the
+ * first hoverview to another position, the stacked ones follow it.
+ */
+class HoverViewStack {
+
+    private HoverViewStack() {
+    }
+
+    static void append(HoverView first, HoverView hoverView) {
+        HoverView last = first;
+        while (last.mStackNext != null) {
+            last = last.mStackNext;
+        }
+        last.mStackNext = hoverView;
+        hoverView.mStackPrevious = last;
+        hoverView.mStackNext = null;
+    }
+
+    /**
+     * @return the new first hoverview of the stack, null if it is now empty
+     */
+    static HoverView remove(HoverView first, HoverView hoverView) {
+        HoverView previous = hoverView.mStackPrevious;
+        HoverView next = hoverView.mStackNext;
+        if (previous != null) {
+            previous.mStackNext = next;
+        }
+        if (next != null) {
+            next.mStackPrevious = previous;
+        }
+        hoverView.mStackPrevious = null;
+        hoverView.mStackNext = null;
+        hoverView.mPlacement.stackOffset = 0;
+        return first == hoverView ? next : first;
+    }
+
+    /**
+     * Position the hoverview is placed at. The first hoverview is placed at its own position,
+     * collision avoidance may then move it. The hoverviews stacked on it swap the requested
+     * and the placed positions of the first one, so the ones sharing its position follow it
+     * and the ones of the position it moved to take its place.
+     */
+    static int getPosition(HoverView hoverView) {
+        int position = hoverView.getPosition();
+        HoverView first = hoverView.mStackPrevious;
+        if (first == null) {
+            return position;
+        }
+        while (first.mStackPrevious != null) {
+            first = first.mStackPrevious;
+        }
+        int requested = first.getPosition();
+        int placed = first.mPlacement.position;
+        if (position == requested) {
+            return placed;
+        } else if (position == placed) {
+            return requested;
+        }
+        return position;
+    }
+
+    /**
+     * Distance from the anchor at which the hoverview interval starts, i.e. where the
+     * previous hoverview placed at the same position ends.
+     */
+    static int getOffset(HoverView hoverView) {
+        int position = getPosition(hoverView);
+        HoverView previous = hoverView.mStackPrevious;
+        while (previous != null && previous.mPlacement.position != position) {
+            previous = previous.mStackPrevious;
+        }
+        return previous != null ? previous.mPlacement.stackOffset + getExtent(previous) : 0;
+    }
+
+    /**
+     * Size of the hoverview interval along its position, the arrow included.
+     */
+    private static int getExtent(HoverView hoverView) {
+        Placement placement = hoverView.mPlacement;
+        boolean vertical = placement.resolvedPosition == HoverView.POSITION_ABOVE
+                || placement.resolvedPosition == HoverView.POSITION_BELOW;
+        return (vertical ? placement.height : placement.width) + placement.arrowSize;
+    }
+
+}
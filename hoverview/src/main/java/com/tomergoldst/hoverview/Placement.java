@@ -0,0 +1,424 @@
+/*
+Copyright 2017 Tomer Goldstein
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.tomergoldst.hoverview;
+
+/**
+ * Placement state of a single hoverview.
+ *
+ * Holds the geometry the position was computed from, the result and the last
+ * measurements, so an hoverview can be placed again without touching the view hierarchy
+ * unless its width constraint changes to one not measured yet. Plain java, the view side lives in {@link ViewCoordinatesFinder}.
+ */
+class Placement {
+
+    static final int NO_WIDTH_CONSTRAINT = -1;
+
+    // width constraints whose measured height is kept, one per position tried when avoiding
+    // collisions
+    private static final int MEASURED_SLOTS = 4;
+
+    // direction the arrow points to
+    static final int ARROW_UP = 0;
+    static final int ARROW_DOWN = 1;
+    static final int ARROW_LEFT = 2;
+    static final int ARROW_RIGHT = 3;
+
+    interface Measurer {
+        /**
+         * @param width exact width the content is laid out with
+         * @return measured height of the content
+         */
+        int measureHeight(int width);
+    }
+
+    // inputs, all coordinates are on screen
+    int position;
+    int align;
+    boolean rtl;
+    int offsetX;
+    int offsetY;
+
+    int anchorLeft;
+    int anchorTop;
+    int anchorRight;
+    int anchorBottom;
+
+    int rootLeft;
+    int rootTop;
+    int rootRight;
+    int rootBottom;
+    int rootPaddingLeft;
+    int rootPaddingTop;
+    int rootPaddingRight;
+    int rootPaddingBottom;
+
+    // wrap content size of the hoverview
+    int contentWidth;
+    int contentHeight;
+
+    // height of the arrow pointing at the anchor, 0 for no arrow
+    int arrowSize;
+
+    // distance from the anchor taken by hoverviews stacked before this one
+    int stackOffset;
+
+    // outputs, x and y are relative to the top left of the root content area
+    int resolvedPosition;
+    int x;
+    int y;
+    int width;
+    int height;
+    int widthConstraint = NO_WIDTH_CONSTRAINT;
+
+    // arrow top left, relative to the root content area like x and y
+    int arrowDirection;
+    int arrowX;
+    int arrowY;
+
+    // sizes of the arrays written by writeKey and writeResult
+    static final int KEY_SIZE = 17;
+    static final int RESULT_SIZE = 11;
+
+    // heights measured per width constraint, replaced in turn
+    private final int[] mMeasuredConstraints = {NO_WIDTH_CONSTRAINT, NO_WIDTH_CONSTRAINT,
+            NO_WIDTH_CONSTRAINT, NO_WIDTH_CONSTRAINT};
+    private final int[] mMeasuredHeights = new int[MEASURED_SLOTS];
+    private int mNextMeasuredSlot;
+
+    void setAnchor(int left, int top, int right, int bottom) {
+        anchorLeft = left;
+        anchorTop = top;
+        anchorRight = right;
+        anchorBottom = bottom;
+    }
+
+    void setRoot(int left, int top, int right, int bottom) {
+        rootLeft = left;
+        rootTop = top;
+        rootRight = right;
+        rootBottom = bottom;
+    }
+
+    void setRootPadding(int left, int top, int right, int bottom) {
+        rootPaddingLeft = left;
+        rootPaddingTop = top;
+        rootPaddingRight = right;
+        rootPaddingBottom = bottom;
+    }
+
+    void setContentSize(int width, int height) {
+        contentWidth = width;
+        contentHeight = height;
+        // a new content size invalidates any measurement taken with a constraint
+        for (int i = 0; i < MEASURED_SLOTS; i++) {
+            mMeasuredConstraints[i] = NO_WIDTH_CONSTRAINT;
+        }
+    }
+
+    /**
+     * Write every input except the content size, which is what a cached result saves
+     * measuring. Anchor and root are written relative to the root, as the result is.
+     */
+    void writeKey(int[] key) {
+        key[0] = position;
+        key[1] = align;
+        key[2] = rtl ? 1 : 0;
+        key[3] = offsetX;
+        key[4] = offsetY;
+        key[5] = anchorLeft - rootLeft;
+        key[6] = anchorTop - rootTop;
+        key[7] = anchorRight - rootLeft;
+        key[8] = anchorBottom - rootTop;
+        key[9] = rootRight - rootLeft;
+        key[10] = rootBottom - rootTop;
+        key[11] = rootPaddingLeft;
+        key[12] = rootPaddingTop;
+        key[13] = rootPaddingRight;
+        key[14] = rootPaddingBottom;
+        key[15] = arrowSize;
+        key[16] = stackOffset;
+    }
+
+    void writeResult(int[] result) {
+        result[0] = contentWidth;
+        result[1] = contentHeight;
+        result[2] = resolvedPosition;
+        result[3] = x;
+        result[4] = y;
+        result[5] = width;
+        result[6] = height;
+        result[7] = widthConstraint;
+        result[8] = arrowDirection;
+        result[9] = arrowX;
+        result[10] = arrowY;
+    }
+
+    /**
+     * Restore a result written by writeResult for the same inputs, without computing it.
+     */
+    void readResult(int[] result) {
+        setContentSize(result[0], result[1]);
+        resolvedPosition = result[2];
+        x = result[3];
+        y = result[4];
+        width = result[5];
+        height = result[6];
+        widthConstraint = result[7];
+        arrowDirection = result[8];
+        arrowX = result[9];
+        arrowY = result[10];
+        if (widthConstraint != NO_WIDTH_CONSTRAINT) {
+            // the cached height is the one measured with the constraint
+            putMeasuredHeight(widthConstraint, height);
+        }
+    }
+
+    /**
+     * Horizontal translation of the hoverview view. Views are laid out at the start of the
+     * root content area, its right edge in an RTL root, while x is from its left edge.
+     */
+    int getTranslationX() {
+        return x - getLayoutLeft(width);
+    }
+
+    int getArrowTranslationX() {
+        boolean vertical = arrowDirection == ARROW_UP || arrowDirection == ARROW_DOWN;
+        return arrowX - getLayoutLeft(vertical ? arrowSize * 2 : arrowSize);
+    }
+
+    /**
+     * @return left of a view of the given width laid out by the root, relative to the root
+     * content area like x
+     */
+    private int getLayoutLeft(int viewWidth) {
+        if (!rtl) {
+            return 0;
+        }
+        return rootRight - rootPaddingRight - rootLeft - rootPaddingLeft - viewWidth;
+    }
+
+    /**
+     * Write the rect taken by the hoverview and its arrow, relative to the root content area
+     * like x and y, as left, top, right and bottom.
+     */
+    void writeBounds(int[] bounds) {
+        int left = x;
+        int top = y;
+        int right = x + width;
+        int bottom = y + height;
+        if (arrowSize > 0) {
+            switch (arrowDirection) {
+                case ARROW_UP:
+                    top -= arrowSize;
+                    break;
+                case ARROW_DOWN:
+                    bottom += arrowSize;
+                    break;
+                case ARROW_LEFT:
+                    left -= arrowSize;
+                    break;
+                case ARROW_RIGHT:
+                    right += arrowSize;
+                    break;
+            }
+        }
+        bounds[0] = left;
+        bounds[1] = top;
+        bounds[2] = right;
+        bounds[3] = bottom;
+    }
+
+    /**
+     * Compute the position of the hoverview from the current inputs.
+     *
+     * @param measurer used only for a width constraint not measured yet
+     * @return true if the width constraint changed since the previous computation
+     */
+    boolean compute(Measurer measurer) {
+        int previousConstraint = widthConstraint;
+
+        resolvedPosition = resolvePosition();
+        width = contentWidth;
+        height = contentHeight;
+        widthConstraint = NO_WIDTH_CONSTRAINT;
+
+        int rootContentLeft = rootLeft + rootPaddingLeft;
+        int rootContentRight = rootRight - rootPaddingRight;
+        int px;
+        int py;
+
+        switch (resolvedPosition) {
+            case HoverView.POSITION_RIGHT_TO:
+                px = anchorRight + arrowSize + stackOffset;
+                if (px + width > rootContentRight) {
+                    constrainWidth(rootContentRight - px, measurer);
+                }
+                py = anchorTop + getYCenteringOffset();
+                break;
+            case HoverView.POSITION_LEFT_TO:
+                px = anchorLeft - arrowSize - stackOffset - width;
+                if (px < rootContentLeft) {
+                    px = rootContentLeft;
+                    constrainWidth(anchorLeft - arrowSize - stackOffset - rootContentLeft, measurer);
+                }
+                py = anchorTop + getYCenteringOffset();
+                break;
+            case HoverView.POSITION_BELOW:
+                px = adjustHorizontal(anchorLeft + getXOffset(), rootContentLeft, rootContentRight, measurer);
+                py = anchorBottom + arrowSize + stackOffset;
+                break;
+            case HoverView.POSITION_ABOVE:
+            default:
+                px = adjustHorizontal(anchorLeft + getXOffset(), rootContentLeft, rootContentRight, measurer);
+                py = anchorTop - arrowSize - stackOffset - height;
+                break;
+        }
+
+        // add user defined offset values
+        px += rtl ? -offsetX : offsetX;
+        py += offsetY;
+
+        // coordinates so far are on screen, the view is laid out at the top left of the root
+        // content area so make them relative to it
+        x = px - rootContentLeft;
+        y = py - rootTop - rootPaddingTop;
+
+        if (arrowSize > 0) {
+            computeArrow(rootContentLeft, rootTop + rootPaddingTop);
+        }
+
+        return previousConstraint != widthConstraint;
+    }
+
+    /**
+     * Place the arrow on the hoverview side facing the anchor, pointing at the anchor center
+     * as long as it stays within the final (possibly clamped) hoverview bounds.
+     */
+    private void computeArrow(int originX, int originY) {
+        int base = arrowSize * 2;
+        switch (resolvedPosition) {
+            case HoverView.POSITION_RIGHT_TO:
+            case HoverView.POSITION_LEFT_TO:
+                arrowDirection = resolvedPosition == HoverView.POSITION_RIGHT_TO ? ARROW_LEFT : ARROW_RIGHT;
+                arrowX = resolvedPosition == HoverView.POSITION_RIGHT_TO ? x - arrowSize : x + width;
+                arrowY = clamp((anchorTop + anchorBottom) / 2 - originY - arrowSize, y, y + height - base);
+                break;
+            case HoverView.POSITION_BELOW:
+            case HoverView.POSITION_ABOVE:
+            default:
+                arrowDirection = resolvedPosition == HoverView.POSITION_BELOW ? ARROW_UP : ARROW_DOWN;
+                arrowX = clamp((anchorLeft + anchorRight) / 2 - originX - arrowSize, x, x + width - base);
+                arrowY = resolvedPosition == HoverView.POSITION_BELOW ? y - arrowSize : y + height;
+                break;
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        if (max < min) {
+            // hoverview is smaller than the arrow base, center on it
+            return (min + max) / 2;
+        }
+        return Math.max(min, Math.min(value, max));
+    }
+
+    private int resolvePosition() {
+        // on RTL languages replace sides
+        if (rtl) {
+            if (position == HoverView.POSITION_LEFT_TO) {
+                return HoverView.POSITION_RIGHT_TO;
+            } else if (position == HoverView.POSITION_RIGHT_TO) {
+                return HoverView.POSITION_LEFT_TO;
+            }
+        }
+        return position;
+    }
+
+    private int adjustHorizontal(int px, int rootContentLeft, int rootContentRight, Measurer measurer) {
+        switch (align) {
+            case HoverView.ALIGN_CENTER:
+                int rootWidth = rootContentRight - rootContentLeft;
+                if (width > rootWidth) {
+                    px = rootContentLeft;
+                    constrainWidth(rootWidth, measurer);
+                } else if (px < rootContentLeft) {
+                    // fits the root but not centered on the anchor, slide it back in
+                    px = rootContentLeft;
+                } else if (px + width > rootContentRight) {
+                    px = rootContentRight - width;
+                }
+                break;
+            case HoverView.ALIGN_LEFT:
+                if (px + width > rootContentRight) {
+                    constrainWidth(rootContentRight - anchorLeft, measurer);
+                }
+                break;
+            case HoverView.ALIGN_RIGHT:
+                if (px < rootContentLeft) {
+                    px = rootContentLeft;
+                    constrainWidth(anchorRight - rootContentLeft, measurer);
+                }
+                break;
+        }
+        return px;
+    }
+
+    private void constrainWidth(int constraint, Measurer measurer) {
+        // no room left on the side, negative widths would read as layout params constants
+        constraint = Math.max(0, constraint);
+        widthConstraint = constraint;
+        width = constraint;
+        for (int i = 0; i < MEASURED_SLOTS; i++) {
+            if (mMeasuredConstraints[i] == constraint) {
+                height = mMeasuredHeights[i];
+                return;
+            }
+        }
+        height = measurer.measureHeight(constraint);
+        putMeasuredHeight(constraint, height);
+    }
+
+    private void putMeasuredHeight(int constraint, int measuredHeight) {
+        mMeasuredConstraints[mNextMeasuredSlot] = constraint;
+        mMeasuredHeights[mNextMeasuredSlot] = measuredHeight;
+        mNextMeasuredSlot = (mNextMeasuredSlot + 1) % MEASURED_SLOTS;
+    }
+
+    /**
+     * calculate the amount of movement need to be taken inorder to align view
+     * on X axis according to "align" parameter
+     */
+    private int getXOffset() {
+        switch (align) {
+            case HoverView.ALIGN_CENTER:
+                return (anchorRight - anchorLeft - width) / 2;
+            case HoverView.ALIGN_RIGHT:
+                return anchorRight - anchorLeft - width;
+            case HoverView.ALIGN_LEFT:
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * calculate the amount of movement need to be taken inorder to center view
+     * on Y axis
+     */
+    private int getYCenteringOffset() {
+        return (anchorBottom - anchorTop - height) / 2;
+    }
+
+}
@@ -0,0 +1,201 @@
+/*
+Copyright 2017 Tomer Goldstein
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.tomergoldst.hoverview;
+
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process wide LRU cache of hoverview placements.
+ *
+ * Only hoverviews built with a placement cache key are cached. The key of an entry is made of
+ * the content key, the anchor and root geometry relative to the root, the placement options
+ * and the configuration (density, font scale and layout direction). As the cache is not tied
+ * to a {@link HoverViewManager}, hoverviews shown again after the activity is recreated are
+ * placed without being measured.
+ *
+ * The cache is accessed from the main thread only.
+ */
+public class PlacementCache {
+
+    private static final String TAG = PlacementCache.class.getSimpleName();
+
+    private static final int DEFAULT_MAX_SIZE = 128;
+
+    private static final PlacementCache sInstance = new PlacementCache();
+
+    private final Map<Key, int[]> mEntries = new LinkedHashMap<Key, int[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest) {
+            return size() > mMaxSize;
+        }
+    };
+
+    // reused to look entries up without allocating
+    private final Key mProbe = new Key();
+
+    private int mMaxSize = DEFAULT_MAX_SIZE;
+    private boolean mEnabled = true;
+    private int mVerificationRate;
+    private int mHitsSinceVerification;
+
+    private int mHitCount;
+    private int mMissCount;
+    private int mStaleCount;
+
+    public static PlacementCache getInstance() {
+        return sInstance;
+    }
+
+    PlacementCache() {
+    }
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        if (!enabled) {
+            mEntries.clear();
+        }
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * @param maxSize maximum number of placements kept, least recently used ones are dropped
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        mMaxSize = maxSize;
+        if (mEntries.size() > maxSize) {
+            // drop the least recently used entries first
+            Iterator<Key> keys = mEntries.keySet().iterator();
+            for (int excess = mEntries.size() - maxSize; excess > 0; excess--) {
+                keys.next();
+                keys.remove();
+            }
+        }
+    }
+
+    /**
+     * Verify cached placements, a cache hit is placed from scratch once every given number of
+     * hits and compared with the cached placement. A stale placement is counted, logged and
+     * replaced by the computed one.
+     * @param everyHits number of hits per verification, 0 to disable verification
+     */
+    public void setVerificationRate(int everyHits) {
+        mVerificationRate = Math.max(0, everyHits);
+        mHitsSinceVerification = 0;
+    }
+
+    public void clear() {
+        mEntries.clear();
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    public int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * @return number of verified hits whose cached placement differed from the computed one
+     */
+    public int getStaleCount() {
+        return mStaleCount;
+    }
+
+    /**
+     * @return the cached result for the key, or null on a miss
+     */
+    int[] get(int[] key) {
+        mProbe.set(key);
+        int[] result = mEntries.get(mProbe);
+        mProbe.mValues = null;
+        if (result != null) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the hit just returned by {@link #get(int[])} should be verified
+     */
+    boolean shouldVerify() {
+        if (mVerificationRate == 0 || ++mHitsSinceVerification < mVerificationRate) {
+            return false;
+        }
+        mHitsSinceVerification = 0;
+        return true;
+    }
+
+    void put(int[] key, int[] result) {
+        Key entryKey = new Key();
+        entryKey.set(key.clone());
+        mEntries.put(entryKey, result.clone());
+    }
+
+    /**
+     * Compare a verified hit with the result computed for the same key.
+     */
+    void verify(int[] key, int[] cached, int[] computed) {
+        if (Arrays.equals(cached, computed)) {
+            return;
+        }
+        mStaleCount++;
+        Log.w(TAG, "Stale placement, cached " + Arrays.toString(cached)
+                + " computed " + Arrays.toString(computed));
+        put(key, computed);
+    }
+
+    private static class Key {
+
+        int[] mValues;
+        int mHash;
+
+        void set(int[] values) {
+            mValues = values;
+            mHash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && mHash == ((Key) o).mHash
+                    && Arrays.equals(mValues, ((Key) o).mValues);
+        }
+    }
+
+}
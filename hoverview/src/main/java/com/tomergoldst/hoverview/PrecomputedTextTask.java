@@ -0,0 +1,152 @@
+/*
+Copyright 2017 Tomer Goldstein
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.tomergoldst.hoverview;
+
+import android.os.Handler;
+import android.support.annotation.NonNull;
+import android.support.v4.text.PrecomputedTextCompat;
+import android.support.v4.widget.TextViewCompat;
+import android.util.Log;
+import android.widget.TextView;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Text layout of an hoverview computed off the main thread.
+ *
+ * The text metrics params are read from the text view on the main thread, the text is then
+ * shaped on a background thread and the result is delivered back on the main thread, where
+ * the hoverview can be measured and placed without shaping the text again.
+ */
+class PrecomputedTextTask implements Runnable {
+
+    private static final String TAG = PrecomputedTextTask.class.getSimpleName();
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "hoverview-text");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    interface Callback {
+        /**
+         * The text layout is ready, or failed and the plain text is used instead.
+         */
+        void onTextReady(PrecomputedTextTask task);
+
+        /**
+         * The text layout is not ready by the deadline.
+         */
+        void onTextDeadline(PrecomputedTextTask task);
+    }
+
+    final HoverView mHoverView;
+    private final CharSequence mText;
+    private final PrecomputedTextCompat.Params mParams;
+    private final Handler mHandler;
+    private final Callback mCallback;
+
+    // written on the background thread, read on the main thread once delivered
+    private volatile PrecomputedTextCompat mResult;
+    // delivered, timed out or cancelled, main thread only
+    private boolean mFinished;
+
+    private final Runnable mDeliver = new Runnable() {
+        @Override
+        public void run() {
+            if (!mFinished) {
+                mFinished = true;
+                mHandler.removeCallbacks(mDeadline);
+                mCallback.onTextReady(PrecomputedTextTask.this);
+            }
+        }
+    };
+
+    private final Runnable mDeadline = new Runnable() {
+        @Override
+        public void run() {
+            if (!mFinished) {
+                mFinished = true;
+                mCallback.onTextDeadline(PrecomputedTextTask.this);
+            }
+        }
+    };
+
+    PrecomputedTextTask(HoverView hoverView, Handler handler, Callback callback) {
+        mHoverView = hoverView;
+        mText = hoverView.getText();
+        mParams = TextViewCompat.getTextMetricsParams(hoverView.getTextView());
+        mHandler = handler;
+        mCallback = callback;
+    }
+
+    /**
+     * @param deadline milliseconds to wait for the text layout, 0 to wait as long as needed
+     */
+    void start(long deadline) {
+        sExecutor.execute(this);
+        if (deadline > 0) {
+            mHandler.postDelayed(mDeadline, deadline);
+        }
+    }
+
+    void cancel() {
+        mFinished = true;
+        mHandler.removeCallbacks(mDeliver);
+        mHandler.removeCallbacks(mDeadline);
+    }
+
+    @Override
+    public void run() {
+        try {
+            mResult = PrecomputedTextCompat.create(mText, mParams);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Unable to precompute hoverview text", e);
+        }
+        mHandler.post(mDeliver);
+    }
+
+    /**
+     * Set the precomputed text on the text view, or the plain text if it is not available.
+     */
+    void applyText() {
+        TextView textView = mHoverView.getTextView();
+        if (mResult != null) {
+            try {
+                TextViewCompat.setPrecomputedText(textView, mResult);
+                return;
+            } catch (IllegalArgumentException e) {
+                // the text view style changed since the params were read
+                Log.w(TAG, "Precomputed text does not match the text view, using plain text");
+            }
+        }
+        textView.setText(mText);
+    }
+
+    /**
+     * Set the plain text on the text view, shaped on the main thread when measured.
+     */
+    void applyPlainText() {
+        mHoverView.getTextView().setText(mText);
+    }
+
+}
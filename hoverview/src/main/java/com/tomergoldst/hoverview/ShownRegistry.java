@@ -0,0 +1,381 @@
+/*
+Copyright 2017 Tomer Goldstein
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.tomergoldst.hoverview;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Persistent registry of hoverviews which were already shown, used for show once hoverviews.
+ *
+ * Ids are stored as an append only log of 8 byte values. The log is read on a background
+ * thread, through a memory mapped read, as soon as the registry is created. Until it is
+ * loaded only the ids marked since are known, the manager holds show once hoverviews back
+ * until then, so create the registry early. New ids are
+ * visible immediately and written to disk in batches on the same background thread. A log
+ * holding mostly duplicated ids is compacted when loaded.
+ */
+public class ShownRegistry {
+
+    private static final String TAG = ShownRegistry.class.getSimpleName();
+
+    private static final String FILE_NAME = "hoverview_shown.log";
+
+    private static final ExecutorService sWriteExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "hoverview-registry");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final File mFile;
+    private final Executor mExecutor;
+
+    // a log holding at least this many entries per distinct id is rewritten when loaded
+    private static final int COMPACTION_RATIO = 2;
+
+    private final Object mLock = new Object();
+    // ids of the log once loaded, and ids marked since the registry was created
+    private final LongHashSet mShownIds = new LongHashSet();
+    private boolean mLoaded;
+    // run on the loading thread once loaded
+    private final List<Runnable> mLoadCallbacks = new ArrayList<>();
+    private long[] mPendingIds = new long[8];
+    private int mPendingCount;
+    private boolean mFlushScheduled;
+
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private final Runnable mLoad = new Runnable() {
+        @Override
+        public void run() {
+            LongHashSet ids = load(mFile);
+            Runnable[] callbacks;
+            synchronized (mLock) {
+                mShownIds.addAll(ids);
+                mLoaded = true;
+                callbacks = mLoadCallbacks.toArray(new Runnable[mLoadCallbacks.size()]);
+                mLoadCallbacks.clear();
+            }
+            for (Runnable callback : callbacks) {
+                callback.run();
+            }
+        }
+    };
+
+    public ShownRegistry(Context context) {
+        this(new File(context.getFilesDir(), FILE_NAME), sWriteExecutor);
+    }
+
+    ShownRegistry(File file, Executor executor) {
+        mFile = file;
+        mExecutor = executor;
+        // writes go through the same executor, so they are appended after the log is read
+        mExecutor.execute(mLoad);
+    }
+
+    /**
+     * Stable 64 bit id for a string key, used by the string variants.
+     */
+    public static long toId(@NonNull String key) {
+        // FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Can be called before inflating a show once hoverview to skip the work entirely.
+     * Ids are reported as not shown until the registry is loaded, see {@link #isLoaded()}.
+     */
+    public boolean isShown(@NonNull String key) {
+        return isShown(toId(key));
+    }
+
+    public boolean isShown(long id) {
+        synchronized (mLock) {
+            return mShownIds.contains(id);
+        }
+    }
+
+    /**
+     * @return true once the ids stored on disk are read
+     */
+    public boolean isLoaded() {
+        synchronized (mLock) {
+            return mLoaded;
+        }
+    }
+
+    /**
+     * Run a callback once the registry is loaded, on the loading thread.
+     * @return false if the registry is already loaded, the callback is not kept
+     */
+    boolean runWhenLoaded(Runnable callback) {
+        synchronized (mLock) {
+            if (mLoaded) {
+                return false;
+            }
+            if (!mLoadCallbacks.contains(callback)) {
+                mLoadCallbacks.add(callback);
+            }
+            return true;
+        }
+    }
+
+    public void markShown(@NonNull String key) {
+        markShown(toId(key));
+    }
+
+    public void markShown(long id) {
+        synchronized (mLock) {
+            if (!mShownIds.add(id)) {
+                return;
+            }
+            if (mPendingCount == mPendingIds.length) {
+                long[] pendingIds = new long[mPendingCount * 2];
+                System.arraycopy(mPendingIds, 0, pendingIds, 0, mPendingCount);
+                mPendingIds = pendingIds;
+            }
+            mPendingIds[mPendingCount++] = id;
+            if (!mFlushScheduled) {
+                mFlushScheduled = true;
+                mExecutor.execute(mFlush);
+            }
+        }
+    }
+
+    private static LongHashSet load(File file) {
+        LongHashSet ids = new LongHashSet();
+        if (!file.exists()) {
+            return ids;
+        }
+        long entries = 0;
+        RandomAccessFile input = null;
+        try {
+            input = new RandomAccessFile(file, "r");
+            FileChannel channel = input.getChannel();
+            // a torn last write leaves a partial entry, ignore it
+            long size = channel.size() & ~7L;
+            entries = size / 8;
+            if (size > 0) {
+                LongBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).asLongBuffer();
+                while (buffer.hasRemaining()) {
+                    ids.add(buffer.get());
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to read shown hoverviews", e);
+            return ids;
+        } finally {
+            close(input);
+        }
+        if (entries >= (long) ids.size() * COMPACTION_RATIO && entries > 0) {
+            compact(file, ids);
+        }
+        return ids;
+    }
+
+    /**
+     * Rewrite the log with each id once, the new log replaces the old one atomically.
+     */
+    private static void compact(File file, LongHashSet ids) {
+        File compacted = new File(file.getPath() + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(ids.size() * 8);
+        ids.writeTo(buffer);
+        FileOutputStream output = null;
+        try {
+            output = new FileOutputStream(compacted);
+            output.write(buffer.array());
+            output.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to compact shown hoverviews", e);
+            close(output);
+            compacted.delete();
+            return;
+        }
+        close(output);
+        if (!compacted.renameTo(file)) {
+            Log.e(TAG, "Unable to replace shown hoverviews");
+            compacted.delete();
+        }
+    }
+
+    private void flush() {
+        long[] ids;
+        int count;
+        synchronized (mLock) {
+            ids = mPendingIds;
+            count = mPendingCount;
+            mPendingIds = new long[Math.max(8, count)];
+            mPendingCount = 0;
+            mFlushScheduled = false;
+        }
+        if (count == 0) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(count * 8);
+        for (int i = 0; i < count; i++) {
+            buffer.putLong(ids[i]);
+        }
+        FileOutputStream output = null;
+        try {
+            output = new FileOutputStream(mFile, true);
+            output.write(buffer.array());
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to write shown hoverviews", e);
+        } finally {
+            close(output);
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Open addressing set of longs, avoids boxing every id.
+     */
+    static class LongHashSet {
+
+        private long[] mTable = new long[16];
+        private boolean mHasZero;
+        private int mSize;
+
+        int size() {
+            return mHasZero ? mSize + 1 : mSize;
+        }
+
+        boolean contains(long value) {
+            if (value == 0) {
+                return mHasZero;
+            }
+            int mask = mTable.length - 1;
+            for (int i = mix(value) & mask; mTable[i] != 0; i = (i + 1) & mask) {
+                if (mTable[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return true if the value was not in the set
+         */
+        boolean add(long value) {
+            if (value == 0) {
+                boolean added = !mHasZero;
+                mHasZero = true;
+                return added;
+            }
+            if ((mSize + 1) * 2 > mTable.length) {
+                rehash();
+            }
+            if (insert(mTable, value)) {
+                mSize++;
+                return true;
+            }
+            return false;
+        }
+
+        void addAll(LongHashSet other) {
+            if (other.mHasZero) {
+                add(0);
+            }
+            for (long value : other.mTable) {
+                if (value != 0) {
+                    add(value);
+                }
+            }
+        }
+
+        /**
+         * Put every value of the set in the buffer, in no particular order.
+         */
+        void writeTo(ByteBuffer buffer) {
+            if (mHasZero) {
+                buffer.putLong(0);
+            }
+            for (long value : mTable) {
+                if (value != 0) {
+                    buffer.putLong(value);
+                }
+            }
+        }
+
+        private void rehash() {
+            long[] table = new long[mTable.length * 2];
+            for (long value : mTable) {
+                if (value != 0) {
+                    insert(table, value);
+                }
+            }
+            mTable = table;
+        }
+
+        private static boolean insert(long[] table, long value) {
+            int mask = table.length - 1;
+            int i = mix(value) & mask;
+            while (table[i] != 0) {
+                if (table[i] == value) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            table[i] = value;
+            return true;
+        }
+
+        private static int mix(long value) {
+            long h = value * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+}
@@ -0,0 +1,188 @@
+/*
+Copyright 2017 Tomer Goldstein
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.tomergoldst.hoverview;
+
+import java.util.List;
+
+/**
+ * Hashed timing wheel used to expire hover views after a timeout.
+ *
+ * Timers are kept in intrusive doubly linked lists, one per slot, so scheduling,
+ * rescheduling and cancelling a timer are all O(1) and never allocate.
+ * The wheel itself does not tick, the owner calls {@link #advance(long, List)}, e.g. at
+ * {@link #getNextDeadlineMillis()}.
+ */
+class TimingWheel<T> {
+
+    static class Timer<T> {
+        final T payload;
+        long deadlineTick;
+        int slot = -1;
+        Timer<T> prev;
+        Timer<T> next;
+
+        Timer(T payload) {
+            this.payload = payload;
+        }
+
+        boolean isScheduled() {
+            return slot >= 0;
+        }
+    }
+
+    private final Timer<T>[] mSlots;
+    private final int mMask;
+    private final long mTickMillis;
+    private long mCurrentTick;
+    private int mSize;
+
+    /**
+     * @param tickMillis resolution of the wheel in milliseconds
+     * @param slots number of slots, must be a power of two
+     */
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMillis, int slots) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        if (slots <= 0 || (slots & (slots - 1)) != 0) {
+            throw new IllegalArgumentException("slots must be a power of two");
+        }
+        mTickMillis = tickMillis;
+        mSlots = (Timer<T>[]) new Timer<?>[slots];
+        mMask = slots - 1;
+    }
+
+    long getTickMillis() {
+        return mTickMillis;
+    }
+
+    boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Schedule a timer to expire after delayMillis, an already scheduled timer is moved.
+     */
+    void schedule(Timer<T> timer, long nowMillis, long delayMillis) {
+        cancel(timer);
+        if (mSize == 0) {
+            // nothing is pending, jump the wheel forward instead of replaying idle ticks
+            mCurrentTick = nowMillis / mTickMillis;
+        }
+        long deadlineTick = (nowMillis + delayMillis + mTickMillis - 1) / mTickMillis;
+        if (deadlineTick <= mCurrentTick) {
+            deadlineTick = mCurrentTick + 1;
+        }
+        int slot = (int) (deadlineTick & mMask);
+        timer.deadlineTick = deadlineTick;
+        timer.slot = slot;
+        timer.prev = null;
+        timer.next = mSlots[slot];
+        if (timer.next != null) {
+            timer.next.prev = timer;
+        }
+        mSlots[slot] = timer;
+        mSize++;
+    }
+
+    /**
+     * @return true if the timer was pending
+     */
+    boolean cancel(Timer<T> timer) {
+        if (!timer.isScheduled()) {
+            return false;
+        }
+        unlink(timer);
+        return true;
+    }
+
+    /**
+     * @return time the earliest pending timer expires at, in the clock of the scheduling
+     * calls, or -1 if no timer is pending
+     */
+    long getNextDeadlineMillis() {
+        if (mSize == 0) {
+            return -1;
+        }
+        // the first slot holding a timer of the current round has the earliest one
+        for (int i = 1; i <= mSlots.length; i++) {
+            long tick = mCurrentTick + i;
+            for (Timer<T> timer = mSlots[(int) (tick & mMask)]; timer != null; timer = timer.next) {
+                if (timer.deadlineTick == tick) {
+                    return tick * mTickMillis;
+                }
+            }
+        }
+        // only timers of later rounds are pending
+        long earliest = Long.MAX_VALUE;
+        for (Timer<T> slot : mSlots) {
+            for (Timer<T> timer = slot; timer != null; timer = timer.next) {
+                earliest = Math.min(earliest, timer.deadlineTick);
+            }
+        }
+        return earliest * mTickMillis;
+    }
+
+    /**
+     * Move the wheel up to nowMillis, expired payloads are appended to the given list.
+     * @return number of expired timers
+     */
+    int advance(long nowMillis, List<T> expired) {
+        long targetTick = nowMillis / mTickMillis;
+        if (targetTick <= mCurrentTick) {
+            return 0;
+        }
+        int count = 0;
+        long steps = Math.min(targetTick - mCurrentTick, mSlots.length);
+        for (long i = 1; i <= steps && mSize > 0; i++) {
+            Timer<T> timer = mSlots[(int) ((mCurrentTick + i) & mMask)];
+            while (timer != null) {
+                Timer<T> next = timer.next;
+                // timers of later rounds share the slot, leave them in place
+                if (timer.deadlineTick <= targetTick) {
+                    unlink(timer);
+                    expired.add(timer.payload);
+                    count++;
+                }
+                timer = next;
+            }
+        }
+        mCurrentTick = targetTick;
+        return count;
+    }
+
+    private void unlink(Timer<T> timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            mSlots[timer.slot] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        timer.prev = null;
+        timer.next = null;
+        timer.slot = -1;
+        mSize--;
+    }
+
+}
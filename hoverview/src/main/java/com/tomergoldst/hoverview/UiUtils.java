@@ -16,16 +16,18 @@ limitations under the License.
 
 package com.tomergoldst.hoverview;
 
-import java.util.Locale;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
 
 /**
  * Created by Tomer on 01/07/2016.
  */
 class UiUtils {
 
-    static boolean isRtl(){
-        Locale defLocal = Locale.getDefault();
-        return Character.getDirectionality(defLocal.getDisplayName(defLocal).charAt(0))
-                == Character.DIRECTIONALITY_RIGHT_TO_LEFT;
+    /**
+     * @return true if the view is laid out right to left, a field read which does not allocate
+     */
+    static boolean isRtl(View view){
+        return ViewCompat.getLayoutDirection(view) == ViewCompat.LAYOUT_DIRECTION_RTL;
     }
 }
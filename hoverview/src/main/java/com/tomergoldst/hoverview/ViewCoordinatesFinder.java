@@ -16,7 +16,10 @@ limitations under the License.
 
 package com.tomergoldst.hoverview;
 
-import android.graphics.Point;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.os.Build;
+import android.support.annotation.Nullable;
 import android.view.View;
 import android.view.ViewGroup;
 
@@ -25,203 +28,264 @@ import android.view.ViewGroup;
  */
 class ViewCoordinatesFinder {
 
+    // placement runs on the main thread only, share the geometry holders between calls
+    private static final ViewMeasurer sMeasurer = new ViewMeasurer();
+    private static final Coordinates sAnchorViewCoordinates = new Coordinates();
+    private static final Coordinates sRootCoordinates = new Coordinates();
+    private static final int[] sCacheKey = new int[Placement.KEY_SIZE + 6];
+    private static final int[] sCacheResult = new int[Placement.RESULT_SIZE];
+    private static final int[] sBounds = new int[4];
+
+    // positions tried, in order, when the preferred one collides with other hoverviews
+    private static final int[] ALTERNATIVES_ABOVE = {HoverView.POSITION_BELOW,
+            HoverView.POSITION_RIGHT_TO, HoverView.POSITION_LEFT_TO};
+    private static final int[] ALTERNATIVES_BELOW = {HoverView.POSITION_ABOVE,
+            HoverView.POSITION_RIGHT_TO, HoverView.POSITION_LEFT_TO};
+    private static final int[] ALTERNATIVES_LEFT_TO = {HoverView.POSITION_RIGHT_TO,
+            HoverView.POSITION_ABOVE, HoverView.POSITION_BELOW};
+    private static final int[] ALTERNATIVES_RIGHT_TO = {HoverView.POSITION_LEFT_TO,
+            HoverView.POSITION_ABOVE, HoverView.POSITION_BELOW};
+
     /**
-     * return the top left coordinates for positioning the view
-     * 
+     * place an hoverview just added to its root. When the hoverview has a placement cache
+     * key, a placement cached for the same inputs is reused without measuring the view.
+     *
      * @param hoverview - hoverview object
-     * @return point
+     * @param rtl - true if the root is laid out right to left
+     * @param grid - rects of the other hoverviews in the root, null to ignore them
+     * @return the placement result
      */
-    static Point getCoordinates(HoverView hoverview) {
-        Point point = new Point();
-        final Coordinates anchorViewCoordinates = new Coordinates(hoverview.getAnchorView());
-        final Coordinates rootCoordinates = new Coordinates(hoverview.getRootView());
-
-        View view = hoverview.getView();
-        view.measure(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+    static Placement placeNew(HoverView hoverview, boolean rtl, @Nullable HoverViewGrid<HoverView> grid) {
+        Placement placement = hoverview.mPlacement;
+        resetWidth(hoverview);
+        setInputs(hoverview, rtl);
 
-        switch (hoverview.getPosition()) {
-            case HoverView.POSITION_ABOVE:
-                point = getPositionAbove(view, hoverview,
-                        anchorViewCoordinates, rootCoordinates);
-                break;
-            case HoverView.POSITION_BELOW:
-                point = getPositionBelow(view, hoverview,
-                        anchorViewCoordinates, rootCoordinates);
-                break;
-            case HoverView.POSITION_LEFT_TO:
-                point = getPositionLeftTo(view, hoverview,
-                        anchorViewCoordinates, rootCoordinates);
-                break;
-            case HoverView.POSITION_RIGHT_TO:
-                point = getPositionRightTo(view, hoverview,
-                        anchorViewCoordinates, rootCoordinates);
-                break;
+        // the placement depends on the other hoverviews when they may be avoided, and on the
+        // fallback text while the precomputed text is not ready
+        PlacementCache cache = PlacementCache.getInstance();
+        boolean cacheable = hoverview.hasPlacementCacheKey() && cache.isEnabled()
+                && hoverview.mTextTask == null && hoverview.mStackPrevious == null
+                && (grid == null || grid.size() == 0);
+        int[] cached = null;
+        if (cacheable) {
+            writeCacheKey(hoverview, grid != null, sCacheKey);
+            cached = cache.get(sCacheKey);
+            if (cached != null && !cache.shouldVerify()) {
+                placement.readResult(cached);
+                applyWidthConstraint(hoverview, Placement.NO_WIDTH_CONSTRAINT);
+                return placement;
+            }
         }
 
-        // add user defined offset values
-        point.x += UiUtils.isRtl() ? -hoverview.getOffsetX() : hoverview.getOffsetX();
-        point.y += hoverview.getOffsetY();
+        measure(hoverview);
+        compute(hoverview, grid, Placement.NO_WIDTH_CONSTRAINT);
 
-        // coordinates retrieved are relative to 0,0 of the root layout
-        // added view to root is subject to root padding
-        // we need to subtract the top and left padding of root from coordinates. to adjust
-        // top left view coordinates
-        point.x -= hoverview.getRootView().getPaddingLeft();
-        point.y -= hoverview.getRootView().getPaddingTop();
+        if (cacheable) {
+            placement.writeResult(sCacheResult);
+            if (cached == null) {
+                cache.put(sCacheKey, sCacheResult);
+            } else {
+                cache.verify(sCacheKey, cached, sCacheResult);
+            }
+        }
+        return placement;
+    }
 
-        return point;
+    /**
+     * start over from the original width of the view, a shown again hoverview may still
+     * hold the width constraint of its previous placement
+     */
+    private static void resetWidth(HoverView hoverview) {
+        ViewGroup.LayoutParams params = hoverview.getView().getLayoutParams();
+        if (hoverview.mPlacement.widthConstraint != Placement.NO_WIDTH_CONSTRAINT) {
+            params.width = hoverview.mLayoutWidth;
+            hoverview.mPlacement.widthConstraint = Placement.NO_WIDTH_CONSTRAINT;
+        } else {
+            hoverview.mLayoutWidth = params.width;
+        }
+    }
 
+    /**
+     * measure the wrap content size of the hoverview, this is done once per hoverview
+     * and reused every time it is placed again
+     */
+    private static void measure(HoverView hoverview) {
+        View view = hoverview.getView();
+        view.measure(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        hoverview.mPlacement.setContentSize(view.getMeasuredWidth(), view.getMeasuredHeight());
     }
 
-    private static Point getPositionRightTo(View view, HoverView hoverView, Coordinates anchorViewCoordinates, Coordinates rootLocation) {
-        Point point = new Point();
-        point.x = anchorViewCoordinates.right;
-        AdjustRightToOutOfBounds(view, hoverView.getRootView(), point, anchorViewCoordinates, rootLocation);
-        point.y = anchorViewCoordinates.top + getYCenteringOffset(view, hoverView);
-        return point;
+    private static void writeCacheKey(HoverView hoverview, boolean avoidCollisions, int[] key) {
+        hoverview.mPlacement.writeKey(key);
+        int i = Placement.KEY_SIZE;
+        long contentKey = hoverview.getPlacementCacheKey();
+        key[i++] = (int) (contentKey >>> 32);
+        key[i++] = (int) contentKey;
+        key[i++] = avoidCollisions ? 1 : 0;
+
+        // the builder context is optional, the root layout is always there
+        Resources resources = hoverview.getRootView().getResources();
+        Configuration configuration = resources.getConfiguration();
+        key[i++] = Float.floatToIntBits(resources.getDisplayMetrics().density);
+        key[i++] = Float.floatToIntBits(configuration.fontScale);
+        key[i] = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 ?
+                configuration.getLayoutDirection() : 0;
     }
 
-    private static Point getPositionLeftTo(View view, HoverView hoverView, Coordinates anchorViewCoordinates, Coordinates rootLocation) {
-        Point point = new Point();
-        point.x = anchorViewCoordinates.left - view.getMeasuredWidth();
-        AdjustLeftToOutOfBounds(view, hoverView.getRootView(), point, anchorViewCoordinates, rootLocation);
-        point.y = anchorViewCoordinates.top + getYCenteringOffset(view, hoverView);
-        return point;
+    /**
+     * find the top left coordinates for positioning the view, relative to the root content
+     * area, and constrain the view width when it would go out of the root bounds.
+     * The view is measured again only when its width constraint changes to one not measured yet.
+     *
+     * @param hoverview - hoverview object
+     * @param rtl - true if the root is laid out right to left
+     * @return the placement result
+     */
+    static Placement place(HoverView hoverview, boolean rtl) {
+        return place(hoverview, rtl, null);
     }
 
-    private static Point getPositionBelow(View view, HoverView hoverView, Coordinates anchorViewCoordinates, Coordinates rootLocation) {
-        Point point = new Point();
-        point.x = anchorViewCoordinates.left + getXOffset(view, hoverView);
-        if (hoverView.alignedCenter()) {
-            AdjustHorizontalCenteredOutOfBounds(view, hoverView.getRootView(), point, rootLocation);
-        } else if (hoverView.alignedLeft()){
-            AdjustHorizontalLeftAlignmentOutOfBounds(view, hoverView.getRootView(), point, anchorViewCoordinates, rootLocation);
-        } else if (hoverView.alignedRight()){
-            AdjustHorizontalRightAlignmentOutOfBounds(view, hoverView.getRootView(), point, anchorViewCoordinates, rootLocation);
-        }
-        point.y = anchorViewCoordinates.bottom;
-        return point;
+    /**
+     * same as {@link #place(HoverView, boolean)}, and when the preferred position overlaps
+     * other hoverviews of the grid, use the position which overlaps them the least
+     *
+     * @param hoverview - hoverview object
+     * @param rtl - true if the root is laid out right to left
+     * @param grid - rects of the other hoverviews in the root, null to ignore them
+     * @return the placement result
+     */
+    static Placement place(HoverView hoverview, boolean rtl, @Nullable HoverViewGrid<HoverView> grid) {
+        int appliedConstraint = hoverview.mPlacement.widthConstraint;
+        setInputs(hoverview, rtl);
+        return compute(hoverview, grid, appliedConstraint);
     }
 
-    private static Point getPositionAbove(View view, HoverView hoverView,
-                                          Coordinates anchorViewCoordinates, Coordinates rootLocation) {
-        Point point = new Point();
-        point.x = anchorViewCoordinates.left + getXOffset(view, hoverView);
-        if (hoverView.alignedCenter()) {
-            AdjustHorizontalCenteredOutOfBounds(view, hoverView.getRootView(), point, rootLocation);
-        } else if (hoverView.alignedLeft()){
-            AdjustHorizontalLeftAlignmentOutOfBounds(view, hoverView.getRootView(), point, anchorViewCoordinates, rootLocation);
-        } else if (hoverView.alignedRight()){
-            AdjustHorizontalRightAlignmentOutOfBounds(view, hoverView.getRootView(), point, anchorViewCoordinates, rootLocation);
-        }
-        point.y = anchorViewCoordinates.top - view.getMeasuredHeight();
-        return point;
+    private static void setInputs(HoverView hoverview, boolean rtl) {
+        Placement placement = hoverview.mPlacement;
+        final Coordinates anchorViewCoordinates = sAnchorViewCoordinates;
+        final Coordinates rootCoordinates = sRootCoordinates;
+        anchorViewCoordinates.set(hoverview.getAnchorView());
+        rootCoordinates.set(hoverview.getRootView());
+        ViewGroup root = hoverview.getRootView();
+
+        placement.position = HoverViewStack.getPosition(hoverview);
+        placement.align = hoverview.getAlign();
+        placement.rtl = rtl;
+        placement.offsetX = hoverview.getOffsetX();
+        placement.offsetY = hoverview.getOffsetY();
+        placement.arrowSize = hoverview.getArrowSize();
+        placement.stackOffset = HoverViewStack.getOffset(hoverview);
+        placement.setAnchor(anchorViewCoordinates.left, anchorViewCoordinates.top,
+                anchorViewCoordinates.right, anchorViewCoordinates.bottom);
+        placement.setRoot(rootCoordinates.left, rootCoordinates.top,
+                rootCoordinates.right, rootCoordinates.bottom);
+        placement.setRootPadding(root.getPaddingLeft(), root.getPaddingTop(),
+                root.getPaddingRight(), root.getPaddingBottom());
     }
 
-    private static void AdjustRightToOutOfBounds(View view, ViewGroup root, Point point, Coordinates anchorViewCoordinates, Coordinates rootLocation) {
-        ViewGroup.LayoutParams params = view.getLayoutParams();
-        int availableSpace = rootLocation.right - root.getPaddingRight() - anchorViewCoordinates.right;
-        if (point.x + view.getMeasuredWidth() > rootLocation.right - root.getPaddingRight()){
-            params.width = availableSpace;
-            params.height = ViewGroup.LayoutParams.WRAP_CONTENT;
-            view.setLayoutParams(params);
-            measureViewWithFixedWidth(view, params.width);
+    /**
+     * @param appliedConstraint - width constraint the view layout params currently hold
+     */
+    private static Placement compute(HoverView hoverview, @Nullable HoverViewGrid<HoverView> grid,
+                                     int appliedConstraint) {
+        Placement placement = hoverview.mPlacement;
+        sMeasurer.mView = hoverview.getView();
+        placement.compute(sMeasurer);
+        // stacked hoverviews follow the first one of their stack, see HoverViewStack.getPosition
+        if (grid != null && hoverview.mStackPrevious == null) {
+            avoidCollisions(hoverview, grid);
         }
+        sMeasurer.mView = null;
+
+        applyWidthConstraint(hoverview, appliedConstraint);
+        return placement;
     }
 
-    private static void AdjustLeftToOutOfBounds(View view, ViewGroup root, Point point, Coordinates anchorViewCoordinates, Coordinates rootLocation) {
-        ViewGroup.LayoutParams params = view.getLayoutParams();
-        int rootLeft = rootLocation.left + root.getPaddingLeft();
-        if (point.x < rootLeft){
-            int availableSpace = anchorViewCoordinates.left - rootLeft;
-            point.x = rootLeft;
-            params.width = availableSpace;
+    private static void applyWidthConstraint(HoverView hoverview, int appliedConstraint) {
+        Placement placement = hoverview.mPlacement;
+        if (placement.widthConstraint != appliedConstraint) {
+            View view = hoverview.getView();
+            ViewGroup.LayoutParams params = view.getLayoutParams();
+            params.width = placement.widthConstraint != Placement.NO_WIDTH_CONSTRAINT ?
+                    placement.widthConstraint : hoverview.mLayoutWidth;
             params.height = ViewGroup.LayoutParams.WRAP_CONTENT;
             view.setLayoutParams(params);
-            measureViewWithFixedWidth(view, params.width);
         }
     }
 
-    private static void AdjustHorizontalRightAlignmentOutOfBounds(View view, ViewGroup root,
-                                                                  Point point, Coordinates anchorViewCoordinates,
-                                                                  Coordinates rootLocation) {
-        ViewGroup.LayoutParams params = view.getLayoutParams();
-        int rootLeft = rootLocation.left + root.getPaddingLeft();
-        if (point.x < rootLeft){
-            int availableSpace = anchorViewCoordinates.right - rootLeft;
-            point.x = rootLeft;
-            params.width = availableSpace;
-            params.height = ViewGroup.LayoutParams.WRAP_CONTENT;
-            view.setLayoutParams(params);
-            measureViewWithFixedWidth(view, params.width);
+    private static void avoidCollisions(HoverView hoverview, HoverViewGrid<HoverView> grid) {
+        Placement placement = hoverview.mPlacement;
+        long bestCost = getCollisionCost(placement, grid, hoverview.mGridEntry);
+        if (bestCost == 0) {
+            return;
         }
-    }
 
-    private static void AdjustHorizontalLeftAlignmentOutOfBounds(View view, ViewGroup root,
-                                                                 Point point, Coordinates anchorViewCoordinates,
-                                                                 Coordinates rootLocation) {
-        ViewGroup.LayoutParams params = view.getLayoutParams();
-        int rootRight = rootLocation.right - root.getPaddingRight();
-        if (point.x + view.getMeasuredWidth() > rootRight){
-            params.width = rootRight - anchorViewCoordinates.left;
-            params.height = ViewGroup.LayoutParams.WRAP_CONTENT;
-            view.setLayoutParams(params);
-            measureViewWithFixedWidth(view, params.width);
+        int preferred = placement.position;
+        int bestPosition = preferred;
+        int[] alternatives = getAlternatives(preferred);
+        for (int i = 0; i < alternatives.length && bestCost > 0; i++) {
+            placement.position = alternatives[i];
+            placement.compute(sMeasurer);
+            long cost = getCollisionCost(placement, grid, hoverview.mGridEntry);
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestPosition = alternatives[i];
+            }
         }
-    }
 
-    private static void AdjustHorizontalCenteredOutOfBounds(View view, ViewGroup root,
-                                                            Point point, Coordinates rootLocation) {
-        ViewGroup.LayoutParams params = view.getLayoutParams();
-        int rootWidth = root.getWidth() - root.getPaddingLeft() - root.getPaddingRight();
-        if (view.getMeasuredWidth() > rootWidth) {
-            point.x = rootLocation.left + root.getPaddingLeft();
-            params.width = rootWidth;
-            params.height = ViewGroup.LayoutParams.WRAP_CONTENT;
-            view.setLayoutParams(params);
-            measureViewWithFixedWidth(view, rootWidth);
+        if (placement.position != bestPosition) {
+            placement.position = bestPosition;
+            placement.compute(sMeasurer);
         }
     }
 
+    /**
+     * area of the hoverview and its arrow covered by other hoverviews or outside of the root
+     * content area
+     */
+    private static long getCollisionCost(Placement placement, HoverViewGrid<HoverView> grid,
+                                         HoverViewGrid.Entry<HoverView> self) {
+        placement.writeBounds(sBounds);
+        int left = sBounds[0];
+        int top = sBounds[1];
+        int right = sBounds[2];
+        int bottom = sBounds[3];
+        int rootWidth = placement.rootRight - placement.rootLeft
+                - placement.rootPaddingLeft - placement.rootPaddingRight;
+        int rootHeight = placement.rootBottom - placement.rootTop
+                - placement.rootPaddingTop - placement.rootPaddingBottom;
+
+        long insideWidth = Math.max(0, Math.min(right, rootWidth) - Math.max(left, 0));
+        long insideHeight = Math.max(0, Math.min(bottom, rootHeight) - Math.max(top, 0));
+        long outside = (long) (right - left) * (bottom - top) - insideWidth * insideHeight;
 
-    private static void measureViewWithFixedWidth(View view, int width) {
-        view.measure(View.MeasureSpec.makeMeasureSpec(width,
-                View.MeasureSpec.EXACTLY), ViewGroup.LayoutParams.WRAP_CONTENT);
+        return outside + grid.getOverlapArea(left, top, right, bottom, self);
     }
 
-    /**
-     * calculate the amount of movement need to be taken inorder to align view
-     * on X axis according to "align" parameter
-     * @return int
-     */
-    private static int getXOffset(View view, HoverView hoverView) {
-        int offset;
-
-        switch (hoverView.getAlign()) {
-            case HoverView.ALIGN_CENTER:
-                offset = ((hoverView.getAnchorView().getWidth() - view.getMeasuredWidth()) / 2);
-                break;
-            case HoverView.ALIGN_LEFT:
-                offset = 0;
-                break;
-            case HoverView.ALIGN_RIGHT:
-                offset = hoverView.getAnchorView().getWidth() - view.getMeasuredWidth();
-                break;
+    private static int[] getAlternatives(int position) {
+        switch (position) {
+            case HoverView.POSITION_BELOW:
+                return ALTERNATIVES_BELOW;
+            case HoverView.POSITION_LEFT_TO:
+                return ALTERNATIVES_LEFT_TO;
+            case HoverView.POSITION_RIGHT_TO:
+                return ALTERNATIVES_RIGHT_TO;
+            case HoverView.POSITION_ABOVE:
             default:
-                offset = 0;
-                break;
+                return ALTERNATIVES_ABOVE;
         }
-
-        return offset;
     }
 
-    /**
-     * calculate the amount of movement need to be taken inorder to center view
-     * on Y axis
-     * @return int
-     */
-    private static int getYCenteringOffset(View view, HoverView hoverView) {
-        return (hoverView.getAnchorView().getHeight() - view.getMeasuredHeight()) / 2;
+    private static class ViewMeasurer implements Placement.Measurer {
+
+        View mView;
+
+        @Override
+        public int measureHeight(int width) {
+            mView.measure(View.MeasureSpec.makeMeasureSpec(width,
+                    View.MeasureSpec.EXACTLY), ViewGroup.LayoutParams.WRAP_CONTENT);
+            return mView.getMeasuredHeight();
+        }
     }
 
 }
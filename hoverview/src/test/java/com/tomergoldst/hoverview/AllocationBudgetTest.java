@@ -0,0 +1,130 @@
+package com.tomergoldst.hoverview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Guards the allocation free parts of the show / dismiss path: the placement, timer and
+ * flight recorder code which runs on every cycle. The manager and the view coordinates
+ * finder need the view side and can not run on the JVM, so they are not budgeted here.
+ * They only read state resolved beforehand, e.g. the layout direction of each root, and
+ * take anchor view ids as ints so looking them up does not box.
+ */
+public class AllocationBudgetTest {
+
+    private static final int WARMUP = 20000;
+    private static final int ITERATIONS = 100000;
+
+    // bytes per operation, leaves room for the measurement itself but not for any object
+    private static final double BUDGET = 1;
+
+    private static final int[] POSITIONS = {HoverView.POSITION_ABOVE, HoverView.POSITION_BELOW,
+            HoverView.POSITION_LEFT_TO, HoverView.POSITION_RIGHT_TO};
+
+    private com.sun.management.ThreadMXBean mThreadMXBean;
+
+    @Before
+    public void setUp() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        mThreadMXBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(mThreadMXBean.isThreadAllocatedMemorySupported());
+        mThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void placement_doesNotAllocate() {
+        final Placement placement = new Placement();
+        placement.setRoot(0, 0, 1080, 1920);
+        placement.setRootPadding(16, 16, 16, 16);
+        placement.setContentSize(600, 120);
+        final Placement.Measurer measurer = new Placement.Measurer() {
+            @Override
+            public int measureHeight(int width) {
+                return 72000 / Math.max(1, width);
+            }
+        };
+
+        Runnable operation = new Runnable() {
+            int mIteration;
+
+            @Override
+            public void run() {
+                int i = mIteration++;
+                placement.position = POSITIONS[i & 3];
+                placement.align = i % 3;
+                placement.rtl = (i & 4) != 0;
+                placement.setAnchor(i % 900, 400, i % 900 + 180, 460);
+                placement.compute(measurer);
+            }
+        };
+
+        assertWithinBudget(operation);
+    }
+
+    @Test
+    public void timingWheel_rescheduleDoesNotAllocate() {
+        final TimingWheel<Object> wheel = new TimingWheel<>(50, 128);
+        final List<Object> expired = new ArrayList<>(64);
+        final List<TimingWheel.Timer<Object>> timers = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            timers.add(new TimingWheel.Timer<Object>(i));
+        }
+
+        Runnable operation = new Runnable() {
+            long mNow;
+
+            @Override
+            public void run() {
+                mNow += 7;
+                TimingWheel.Timer<Object> timer = timers.get((int) (mNow & 63));
+                wheel.schedule(timer, mNow, 300 + (mNow % 5000));
+                wheel.advance(mNow, expired);
+                expired.clear();
+            }
+        };
+
+        assertWithinBudget(operation);
+    }
+
+    @Test
+    public void flightRecorder_recordDoesNotAllocate() {
+        final FlightRecorder recorder = new FlightRecorder(FlightRecorder.DEFAULT_CAPACITY);
+
+        Runnable operation = new Runnable() {
+            int mAnchor;
+
+            @Override
+            public void run() {
+                mAnchor++;
+                recorder.record(FlightRecorder.EVENT_PLACE, mAnchor, HoverView.POSITION_BELOW, 320);
+            }
+        };
+
+        assertWithinBudget(operation);
+        assertEquals(FlightRecorder.DEFAULT_CAPACITY, recorder.size());
+    }
+
+    private void assertWithinBudget(Runnable operation) {
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run();
+        }
+        long before = mThreadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.run();
+        }
+        long allocated = mThreadMXBean.getThreadAllocatedBytes(threadId) - before;
+        double perOperation = (double) allocated / ITERATIONS;
+        assertTrue("allocated " + perOperation + " bytes per operation", perOperation < BUDGET);
+    }
+}
@@ -0,0 +1,117 @@
+package com.tomergoldst.hoverview;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HoverViewGridTest {
+
+    @Test
+    public void getOverlapArea_findsAnEntryFromEveryCellItCovers() {
+        HoverViewGrid<String> grid = new HoverViewGrid<>();
+        HoverViewGrid.Entry<String> entry = new HoverViewGrid.Entry<>("entry");
+        // covers 3 x 3 cells of 128 pixels
+        grid.update(entry, 100, 100, 300, 300);
+
+        assertEquals(1, grid.size());
+        assertEquals(20 * 20, grid.getOverlapArea(80, 80, 120, 120, null));
+        assertEquals(50 * 50, grid.getOverlapArea(250, 250, 400, 400, null));
+        // counted once although the query covers all of its cells
+        assertEquals(200 * 200, grid.getOverlapArea(0, 0, 512, 512, null));
+        assertEquals(0, grid.getOverlapArea(0, 0, 512, 512, entry));
+        assertEquals(0, grid.getOverlapArea(300, 100, 400, 300, null));
+    }
+
+    @Test
+    public void update_movesAnInsertedEntry() {
+        HoverViewGrid<String> grid = new HoverViewGrid<>();
+        HoverViewGrid.Entry<String> entry = new HoverViewGrid.Entry<>("entry");
+        grid.update(entry, 0, 0, 100, 100);
+
+        grid.update(entry, 1000, -200, 1100, -100);
+
+        assertEquals(1, grid.size());
+        assertEquals(0, grid.getOverlapArea(0, 0, 100, 100, null));
+        assertEquals(100 * 100, grid.getOverlapArea(900, -300, 1200, 0, null));
+    }
+
+    @Test
+    public void remove_takesTheEntryOutOfEveryCell() {
+        HoverViewGrid<String> grid = new HoverViewGrid<>();
+        HoverViewGrid.Entry<String> removed = new HoverViewGrid.Entry<>("removed");
+        HoverViewGrid.Entry<String> kept = new HoverViewGrid.Entry<>("kept");
+        grid.update(removed, 0, 0, 400, 400);
+        grid.update(kept, 300, 300, 500, 500);
+
+        assertTrue(grid.remove(removed));
+        assertFalse(grid.remove(removed));
+
+        assertEquals(1, grid.size());
+        assertEquals(0, grid.getOverlapArea(0, 0, 300, 300, null));
+        assertEquals(100 * 100, grid.getOverlapArea(0, 0, 400, 400, null));
+
+        grid.clear();
+        assertEquals(0, grid.size());
+        assertFalse(grid.remove(kept));
+    }
+
+    @Test
+    public void randomOperations_matchAReferenceModel() {
+        Random random = new Random(42);
+        HoverViewGrid<Integer> grid = new HoverViewGrid<>();
+        // more entries than buckets, spread over far more cells, so cells share buckets
+        List<HoverViewGrid.Entry<Integer>> pool = new ArrayList<>();
+        List<int[]> model = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            pool.add(new HoverViewGrid.Entry<>(i));
+            model.add(null);
+        }
+
+        for (int i = 0; i < 20000; i++) {
+            int index = random.nextInt(pool.size());
+            HoverViewGrid.Entry<Integer> entry = pool.get(index);
+            if (random.nextInt(4) == 0) {
+                assertEquals(model.get(index) != null, grid.remove(entry));
+                model.set(index, null);
+            } else {
+                int[] rect = randomRect(random);
+                grid.update(entry, rect[0], rect[1], rect[2], rect[3]);
+                model.set(index, rect);
+            }
+
+            int[] query = randomRect(random);
+            HoverViewGrid.Entry<Integer> exclude = random.nextBoolean() ? entry : null;
+            assertEquals(getOverlapArea(model, query, exclude == null ? -1 : index),
+                    grid.getOverlapArea(query[0], query[1], query[2], query[3], exclude));
+        }
+    }
+
+    private static int[] randomRect(Random random) {
+        int left = random.nextInt(8000) - 1000;
+        int top = random.nextInt(8000) - 1000;
+        return new int[]{left, top, left + 1 + random.nextInt(600), top + 1 + random.nextInt(300)};
+    }
+
+    private static long getOverlapArea(List<int[]> model, int[] query, int exclude) {
+        long area = 0;
+        for (int i = 0; i < model.size(); i++) {
+            int[] rect = model.get(i);
+            if (rect == null || i == exclude) {
+                continue;
+            }
+            int width = Math.min(query[2], rect[2]) - Math.max(query[0], rect[0]);
+            int height = Math.min(query[3], rect[3]) - Math.max(query[1], rect[1]);
+            if (width > 0 && height > 0) {
+                area += (long) width * height;
+            }
+        }
+        return area;
+    }
+
+}
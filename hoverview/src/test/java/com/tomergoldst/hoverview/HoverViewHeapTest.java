@@ -0,0 +1,125 @@
+package com.tomergoldst.hoverview;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HoverViewHeapTest {
+
+    @Test
+    public void peek_returnsLowestPriorityThenLeastRecentlyShown() {
+        HoverViewHeap heap = new HoverViewHeap();
+        HoverView high = hoverView(5);
+        HoverView lowFirst = hoverView(1);
+        HoverView lowSecond = hoverView(1);
+
+        heap.add(high);
+        heap.add(lowFirst);
+        heap.add(lowSecond);
+
+        assertSame(lowFirst, heap.peek());
+        heap.remove(lowFirst);
+        assertSame(lowSecond, heap.peek());
+        heap.remove(lowSecond);
+        assertSame(high, heap.peek());
+        heap.remove(high);
+        assertNull(heap.peek());
+    }
+
+    @Test
+    public void touch_makesTheHoverViewMostRecentlyShown() {
+        HoverViewHeap heap = new HoverViewHeap();
+        HoverView first = hoverView(0);
+        HoverView second = hoverView(0);
+        heap.add(first);
+        heap.add(second);
+
+        heap.touch(first);
+
+        assertSame(second, heap.peek());
+    }
+
+    @Test
+    public void remove_fromTheMiddleKeepsIndexes() {
+        HoverViewHeap heap = new HoverViewHeap();
+        List<HoverView> hoverViews = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            HoverView hoverView = hoverView(i % 7);
+            hoverViews.add(hoverView);
+            heap.add(hoverView);
+        }
+
+        HoverView removed = hoverViews.get(9);
+        assertTrue(heap.remove(removed));
+        assertFalse(heap.remove(removed));
+        assertFalse(heap.contains(removed));
+        assertEquals(-1, removed.mHeapIndex);
+        assertEquals(19, heap.size());
+        for (HoverView hoverView : hoverViews) {
+            assertEquals(hoverView != removed, heap.contains(hoverView));
+        }
+    }
+
+    @Test
+    public void randomOperations_matchAReferenceModel() {
+        Random random = new Random(42);
+        HoverViewHeap heap = new HoverViewHeap();
+        // kept in eviction order by the model itself, most recently shown last
+        List<HoverView> model = new ArrayList<>();
+        List<HoverView> pool = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            pool.add(hoverView(random.nextInt(4)));
+        }
+
+        for (int i = 0; i < 20000; i++) {
+            HoverView hoverView = pool.get(random.nextInt(pool.size()));
+            int operation = random.nextInt(4);
+            if (operation == 0 && !model.contains(hoverView)) {
+                heap.add(hoverView);
+                model.add(hoverView);
+            } else if (operation == 1) {
+                assertEquals(model.remove(hoverView), heap.remove(hoverView));
+            } else if (operation == 2 && model.contains(hoverView)) {
+                heap.touch(hoverView);
+                model.remove(hoverView);
+                model.add(hoverView);
+            } else if (operation == 3 && heap.size() > 0) {
+                HoverView head = heap.peek();
+                assertSame(expectedHead(model), head);
+                heap.remove(head);
+                model.remove(head);
+            }
+
+            assertEquals(model.size(), heap.size());
+            for (HoverView candidate : pool) {
+                assertEquals(model.contains(candidate), heap.contains(candidate));
+            }
+        }
+    }
+
+    private static HoverView expectedHead(List<HoverView> model) {
+        HoverView head = null;
+        for (HoverView hoverView : model) {
+            // the first one of the lowest priority is the least recently shown
+            if (head == null || hoverView.getPriority() < head.getPriority()) {
+                head = hoverView;
+            }
+        }
+        return head;
+    }
+
+    private static HoverView hoverView(int priority) {
+        return new HoverView.Builder(null, null, null, null, HoverView.POSITION_ABOVE)
+                .setPriority(priority)
+                .build();
+    }
+
+}
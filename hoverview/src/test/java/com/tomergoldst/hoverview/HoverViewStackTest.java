@@ -0,0 +1,73 @@
+package com.tomergoldst.hoverview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HoverViewStackTest {
+
+    @Test
+    public void stackedHoverViews_followTheFirstOneWhenMoved() {
+        HoverView first = hoverView(HoverView.POSITION_ABOVE);
+        HoverView above = hoverView(HoverView.POSITION_ABOVE);
+        HoverView below = hoverView(HoverView.POSITION_BELOW);
+        HoverView right = hoverView(HoverView.POSITION_RIGHT_TO);
+        HoverViewStack.append(first, above);
+        HoverViewStack.append(first, below);
+        HoverViewStack.append(first, right);
+
+        // collision avoidance moved the first one below the anchor
+        place(first, HoverView.POSITION_BELOW, 0, 40);
+
+        assertEquals(HoverView.POSITION_BELOW, HoverViewStack.getPosition(above));
+        assertEquals(HoverView.POSITION_ABOVE, HoverViewStack.getPosition(below));
+        assertEquals(HoverView.POSITION_RIGHT_TO, HoverViewStack.getPosition(right));
+    }
+
+    @Test
+    public void getOffset_startsWhereThePreviousPlacedAtTheSamePositionEnds() {
+        HoverView first = hoverView(HoverView.POSITION_ABOVE);
+        HoverView below = hoverView(HoverView.POSITION_BELOW);
+        HoverView above = hoverView(HoverView.POSITION_ABOVE);
+        HoverView secondAbove = hoverView(HoverView.POSITION_ABOVE);
+        HoverViewStack.append(first, below);
+        HoverViewStack.append(first, above);
+        HoverViewStack.append(first, secondAbove);
+
+        place(first, HoverView.POSITION_BELOW, 0, 40);
+        // swapped with the first one, nothing is placed above the anchor before it
+        place(below, HoverViewStack.getPosition(below), HoverViewStack.getOffset(below), 30);
+        assertEquals(0, below.mPlacement.stackOffset);
+
+        // follows the first one below the anchor, right after it
+        place(above, HoverViewStack.getPosition(above), HoverViewStack.getOffset(above), 20);
+        assertEquals(40, above.mPlacement.stackOffset);
+        assertEquals(60, HoverViewStack.getOffset(secondAbove));
+    }
+
+    @Test
+    public void remove_resetsTheOffsetAndReturnsTheNewFirst() {
+        HoverView first = hoverView(HoverView.POSITION_ABOVE);
+        HoverView second = hoverView(HoverView.POSITION_ABOVE);
+        HoverViewStack.append(first, second);
+        place(first, HoverView.POSITION_ABOVE, 0, 40);
+        place(second, HoverView.POSITION_ABOVE, HoverViewStack.getOffset(second), 40);
+
+        assertEquals(second, HoverViewStack.remove(first, first));
+        assertEquals(0, HoverViewStack.getOffset(second));
+        assertEquals(HoverView.POSITION_ABOVE, HoverViewStack.getPosition(second));
+    }
+
+    private static void place(HoverView hoverView, int position, int stackOffset, int height) {
+        Placement placement = hoverView.mPlacement;
+        placement.position = position;
+        placement.resolvedPosition = position;
+        placement.stackOffset = stackOffset;
+        placement.height = height;
+    }
+
+    private static HoverView hoverView(int position) {
+        return new HoverView.Builder(null, null, null, null, position).build();
+    }
+
+}
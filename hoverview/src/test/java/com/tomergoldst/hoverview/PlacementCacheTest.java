@@ -0,0 +1,92 @@
+package com.tomergoldst.hoverview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PlacementCacheTest {
+
+    @Test
+    public void get_matchesKeysByValue() {
+        PlacementCache cache = new PlacementCache();
+        int[] key = {1, 2, 3};
+        int[] result = {10, 20};
+        assertNull(cache.get(key));
+
+        cache.put(key, result);
+        // the cache keeps copies, the caller buffers are reused between placements
+        key[0] = 4;
+        result[0] = 40;
+
+        assertArrayEquals(new int[]{10, 20}, cache.get(new int[]{1, 2, 3}));
+        assertNull(cache.get(key));
+        assertNull(cache.get(new int[]{1, 2}));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void put_dropsTheLeastRecentlyUsedEntry() {
+        PlacementCache cache = new PlacementCache();
+        cache.setMaxSize(2);
+        cache.put(new int[]{1}, new int[]{1});
+        cache.put(new int[]{2}, new int[]{2});
+        // used, so the second one is now the least recently used
+        cache.get(new int[]{1});
+
+        cache.put(new int[]{3}, new int[]{3});
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get(new int[]{2}));
+        assertArrayEquals(new int[]{1}, cache.get(new int[]{1}));
+
+        cache.setMaxSize(1);
+        assertEquals(1, cache.size());
+        assertArrayEquals(new int[]{1}, cache.get(new int[]{1}));
+    }
+
+    @Test
+    public void shouldVerify_onceEveryGivenNumberOfHits() {
+        PlacementCache cache = new PlacementCache();
+        assertFalse(cache.shouldVerify());
+
+        cache.setVerificationRate(3);
+        assertFalse(cache.shouldVerify());
+        assertFalse(cache.shouldVerify());
+        assertTrue(cache.shouldVerify());
+        assertFalse(cache.shouldVerify());
+        assertFalse(cache.shouldVerify());
+        assertTrue(cache.shouldVerify());
+    }
+
+    @Test
+    public void verify_replacesAStalePlacement() {
+        PlacementCache cache = new PlacementCache();
+        int[] key = {1, 2, 3};
+        cache.put(key, new int[]{10, 20});
+
+        cache.verify(key, cache.get(key), new int[]{10, 20});
+        assertEquals(0, cache.getStaleCount());
+
+        cache.verify(key, cache.get(key), new int[]{10, 30});
+        assertEquals(1, cache.getStaleCount());
+        assertArrayEquals(new int[]{10, 30}, cache.get(key));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void setEnabled_falseDropsTheEntries() {
+        PlacementCache cache = new PlacementCache();
+        cache.put(new int[]{1}, new int[]{1});
+
+        cache.setEnabled(false);
+
+        assertFalse(cache.isEnabled());
+        assertEquals(0, cache.size());
+    }
+
+}
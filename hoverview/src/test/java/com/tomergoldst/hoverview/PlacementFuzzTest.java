@@ -0,0 +1,401 @@
+package com.tomergoldst.hoverview;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Property based test of the placement logic. Random anchor, root and content configurations
+ * are placed with a stand-in measurer wrapping text like lines, then laid out by a stand-in
+ * root applying the view translations and arrow direction the manager sets. Every resulting
+ * on screen rect is checked against the placement invariants. The average time per placement
+ * is checked as well, so both correctness and performance regressions fail the build.
+ */
+public class PlacementFuzzTest {
+
+    private static final long SEED = 0x5eed_2016L;
+    private static final int ITERATIONS = 300000;
+    private static final int TIMED_ITERATIONS = 1000000;
+    // a placement takes about 100 ns once compiled, leave room for slower machines only
+    private static final double BUDGET_NANOS_PER_PLACEMENT = 500;
+
+    private static final int[] POSITIONS = {HoverView.POSITION_ABOVE, HoverView.POSITION_BELOW,
+            HoverView.POSITION_LEFT_TO, HoverView.POSITION_RIGHT_TO};
+    private static final int[] ALIGNS = {HoverView.ALIGN_CENTER, HoverView.ALIGN_LEFT,
+            HoverView.ALIGN_RIGHT};
+
+    /**
+     * Stands in for a text view: content wraps in lines when its width is constrained.
+     */
+    private static class TextMeasurer implements Placement.Measurer {
+
+        int mContentWidth;
+        int mLineHeight;
+
+        @Override
+        public int measureHeight(int width) {
+            int lines = (mContentWidth + Math.max(1, width) - 1) / Math.max(1, width);
+            return lines * mLineHeight;
+        }
+    }
+
+    /**
+     * Stands in for the root layout: lays the hoverview and its arrow out at the start of the
+     * root content area, its top left, or its top right in an RTL root, and moves them by the
+     * translations the manager sets.
+     */
+    private static class StandInRoot {
+
+        int mViewLeft;
+        int mViewTop;
+        int mArrowLeft;
+        int mArrowTop;
+
+        void layout(Placement p) {
+            int contentLeft = p.rootLeft + p.rootPaddingLeft;
+            int contentRight = p.rootRight - p.rootPaddingRight;
+            int contentTop = p.rootTop + p.rootPaddingTop;
+            int arrowWidth = isHorizontal(p.resolvedPosition) ? p.arrowSize : 2 * p.arrowSize;
+            mViewLeft = (p.rtl ? contentRight - p.width : contentLeft) + p.getTranslationX();
+            mViewTop = contentTop + p.y;
+            mArrowLeft = (p.rtl ? contentRight - arrowWidth : contentLeft) + p.getArrowTranslationX();
+            mArrowTop = contentTop + p.arrowY;
+        }
+    }
+
+    // configuration being checked, described only when a check fails
+    private int mIteration;
+    private Placement mPlacement;
+
+    @Test
+    public void placement_holdsInvariants() {
+        Random random = new Random(SEED);
+        Placement placement = new Placement();
+        Placement mirrored = new Placement();
+        TextMeasurer measurer = new TextMeasurer();
+        StandInRoot root = new StandInRoot();
+        StandInRoot mirroredRoot = new StandInRoot();
+
+        mPlacement = placement;
+        for (int i = 0; i < ITERATIONS; i++) {
+            mIteration = i;
+            randomize(random, placement, measurer);
+            placement.compute(measurer);
+            root.layout(placement);
+
+            checkBounds(placement, root);
+            checkAlignment(placement, root);
+            checkArrow(placement, root);
+
+            if (placement.rtl) {
+                mirror(placement, mirrored);
+                mirrored.compute(measurer);
+                mirroredRoot.layout(mirrored);
+                checkMirrored(placement, root, mirrored, mirroredRoot);
+            }
+        }
+    }
+
+    @Test
+    public void placement_withinTimeBudget() {
+        Random random = new Random(SEED);
+        int count = 1024;
+        Placement[] placements = new Placement[count];
+        TextMeasurer[] measurers = new TextMeasurer[count];
+        for (int i = 0; i < count; i++) {
+            placements[i] = new Placement();
+            measurers[i] = new TextMeasurer();
+            randomize(random, placements[i], measurers[i]);
+        }
+
+        // warm up, then measure
+        long checksum = 0;
+        for (int i = 0; i < TIMED_ITERATIONS / 10; i++) {
+            placements[i & (count - 1)].compute(measurers[i & (count - 1)]);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < TIMED_ITERATIONS; i++) {
+            Placement placement = placements[i & (count - 1)];
+            placement.compute(measurers[i & (count - 1)]);
+            checksum += placement.x;
+        }
+        double perPlacement = (double) (System.nanoTime() - start) / TIMED_ITERATIONS;
+
+        // the checksum keeps the computations from being optimized away
+        assertTrue(perPlacement + " ns per placement (checksum " + checksum + ")",
+                perPlacement < BUDGET_NANOS_PER_PLACEMENT);
+    }
+
+    private static void randomize(Random random, Placement placement, TextMeasurer measurer) {
+        int rootLeft = random.nextInt(200);
+        int rootTop = random.nextInt(200);
+        int rootWidth = 200 + random.nextInt(1400);
+        int rootHeight = 200 + random.nextInt(2200);
+        placement.setRoot(rootLeft, rootTop, rootLeft + rootWidth, rootTop + rootHeight);
+        int paddingLeft = random.nextInt(4) == 0 ? 0 : random.nextInt(48);
+        int paddingTop = random.nextInt(48);
+        int paddingRight = random.nextInt(4) == 0 ? 0 : random.nextInt(48);
+        int paddingBottom = random.nextInt(48);
+        placement.setRootPadding(paddingLeft, paddingTop, paddingRight, paddingBottom);
+
+        // anchors lie within the root content area
+        int contentLeft = rootLeft + paddingLeft;
+        int contentWidth = rootWidth - paddingLeft - paddingRight;
+        int contentTop = rootTop + paddingTop;
+        int contentHeight = rootHeight - paddingTop - paddingBottom;
+        int anchorWidth = 1 + random.nextInt(Math.min(400, contentWidth));
+        int anchorHeight = 1 + random.nextInt(Math.min(200, contentHeight));
+        int anchorLeft = contentLeft + random.nextInt(contentWidth - anchorWidth + 1);
+        int anchorTop = contentTop + random.nextInt(contentHeight - anchorHeight + 1);
+        placement.setAnchor(anchorLeft, anchorTop, anchorLeft + anchorWidth, anchorTop + anchorHeight);
+
+        placement.position = POSITIONS[random.nextInt(POSITIONS.length)];
+        placement.align = ALIGNS[random.nextInt(ALIGNS.length)];
+        placement.rtl = random.nextBoolean();
+        placement.offsetX = random.nextInt(3) == 0 ? random.nextInt(41) - 20 : 0;
+        placement.offsetY = random.nextInt(3) == 0 ? random.nextInt(41) - 20 : 0;
+        placement.arrowSize = random.nextBoolean() ? 0 : 4 + random.nextInt(20);
+        placement.stackOffset = random.nextInt(4) == 0 ? random.nextInt(120) : 0;
+
+        measurer.mContentWidth = 1 + random.nextInt(random.nextBoolean() ? 300 : 1800);
+        measurer.mLineHeight = 1 + random.nextInt(60);
+        placement.setContentSize(measurer.mContentWidth, measurer.mLineHeight);
+    }
+
+    /**
+     * Mirror the configuration around the root center, swapping sides, as a LTR layout.
+     */
+    private static void mirror(Placement source, Placement target) {
+        int axis = source.rootLeft + source.rootRight;
+        target.setRoot(source.rootLeft, source.rootTop, source.rootRight, source.rootBottom);
+        target.setRootPadding(source.rootPaddingRight, source.rootPaddingTop,
+                source.rootPaddingLeft, source.rootPaddingBottom);
+        target.setAnchor(axis - source.anchorRight, source.anchorTop,
+                axis - source.anchorLeft, source.anchorBottom);
+        target.position = source.position;
+        target.align = mirrorAlign(source.align);
+        target.rtl = false;
+        target.offsetX = source.offsetX;
+        target.offsetY = source.offsetY;
+        target.arrowSize = source.arrowSize;
+        target.stackOffset = source.stackOffset;
+        target.setContentSize(source.contentWidth, source.contentHeight);
+    }
+
+    private void checkBounds(Placement p, StandInRoot root) {
+        // the user offset is allowed to move the hoverview out of the root
+        int left = root.mViewLeft - signedOffsetX(p);
+        int right = left + p.width;
+        int contentLeft = p.rootLeft + p.rootPaddingLeft;
+        int contentRight = p.rootRight - p.rootPaddingRight;
+
+        if (isHorizontal(p.resolvedPosition)) {
+            // a side without any room left can not hold the hoverview
+            int room = p.resolvedPosition == HoverView.POSITION_RIGHT_TO ?
+                    contentRight - (p.anchorRight + p.arrowSize + p.stackOffset) :
+                    (p.anchorLeft - p.arrowSize - p.stackOffset) - contentLeft;
+            if (room <= 0) {
+                return;
+            }
+        }
+
+        check(p.width > 0, "empty width");
+        check(p.width <= p.contentWidth, "wider than content");
+        check(left >= contentLeft, "left before root content");
+        check(right <= contentRight, "right after root content");
+    }
+
+    private void checkAlignment(Placement p, StandInRoot root) {
+        int left = root.mViewLeft - signedOffsetX(p);
+        int top = root.mViewTop - p.offsetY;
+        int contentLeft = p.rootLeft + p.rootPaddingLeft;
+        int contentRight = p.rootRight - p.rootPaddingRight;
+        int gap = p.arrowSize + p.stackOffset;
+
+        switch (p.resolvedPosition) {
+            case HoverView.POSITION_ABOVE:
+                check(top + p.height == p.anchorTop - gap, "not above the anchor");
+                checkHorizontalAlignment(p, left, contentLeft, contentRight);
+                break;
+            case HoverView.POSITION_BELOW:
+                check(top == p.anchorBottom + gap, "not below the anchor");
+                checkHorizontalAlignment(p, left, contentLeft, contentRight);
+                break;
+            case HoverView.POSITION_LEFT_TO:
+                if (p.anchorLeft - gap - p.contentWidth >= contentLeft) {
+                    check(p.width == p.contentWidth, "constrained with room");
+                    check(left + p.width == p.anchorLeft - gap, "not left to the anchor");
+                }
+                checkVerticalCentering(p, top);
+                break;
+            case HoverView.POSITION_RIGHT_TO:
+                if (p.anchorRight + gap + p.contentWidth <= contentRight) {
+                    check(p.width == p.contentWidth, "constrained with room");
+                }
+                check(left == p.anchorRight + gap, "not right to the anchor");
+                checkVerticalCentering(p, top);
+                break;
+            default:
+                fail("unknown position");
+        }
+    }
+
+    private void checkHorizontalAlignment(Placement p, int left, int contentLeft, int contentRight) {
+        switch (p.align) {
+            case HoverView.ALIGN_LEFT:
+                if (p.anchorLeft + p.contentWidth <= contentRight) {
+                    check(p.width == p.contentWidth, "constrained with room");
+                }
+                check(left == p.anchorLeft, "not left aligned");
+                break;
+            case HoverView.ALIGN_RIGHT:
+                if (p.anchorRight - p.contentWidth >= contentLeft) {
+                    check(p.width == p.contentWidth, "constrained with room");
+                }
+                check(left + p.width == p.anchorRight, "not right aligned");
+                break;
+            case HoverView.ALIGN_CENTER:
+            default:
+                int centered = p.anchorLeft + (p.anchorRight - p.anchorLeft - p.contentWidth) / 2;
+                if (centered >= contentLeft && centered + p.contentWidth <= contentRight) {
+                    check(p.width == p.contentWidth, "constrained with room");
+                    check(Math.abs(2 * left + p.width - p.anchorLeft - p.anchorRight) <= 2,
+                            "not centered");
+                }
+                break;
+        }
+    }
+
+    private void checkVerticalCentering(Placement p, int top) {
+        check(Math.abs(2 * top + p.height - p.anchorTop - p.anchorBottom) <= 2,
+                "not vertically centered");
+    }
+
+    /**
+     * The arrow is drawn between the hoverview and the anchor, pointing at the anchor.
+     */
+    private void checkArrow(Placement p, StandInRoot root) {
+        if (p.arrowSize == 0) {
+            return;
+        }
+        int size = p.arrowSize;
+        int right = root.mViewLeft + p.width;
+        int bottom = root.mViewTop + p.height;
+        switch (p.resolvedPosition) {
+            case HoverView.POSITION_ABOVE:
+                check(p.arrowDirection == Placement.ARROW_DOWN, "arrow not pointing down");
+                check(root.mArrowTop == bottom, "arrow not below the hoverview");
+                break;
+            case HoverView.POSITION_BELOW:
+                check(p.arrowDirection == Placement.ARROW_UP, "arrow not pointing up");
+                check(root.mArrowTop + size == root.mViewTop, "arrow not above the hoverview");
+                break;
+            case HoverView.POSITION_LEFT_TO:
+                check(p.arrowDirection == Placement.ARROW_RIGHT, "arrow not pointing right");
+                check(root.mArrowLeft == right, "arrow not right to the hoverview");
+                break;
+            case HoverView.POSITION_RIGHT_TO:
+                check(p.arrowDirection == Placement.ARROW_LEFT, "arrow not pointing left");
+                check(root.mArrowLeft + size == root.mViewLeft, "arrow not left to the hoverview");
+                break;
+        }
+        // the arrow base stays along the hoverview when it is wide enough to hold it
+        if (isHorizontal(p.resolvedPosition)) {
+            if (p.height >= 2 * size) {
+                check(root.mArrowTop >= root.mViewTop && root.mArrowTop + 2 * size <= bottom,
+                        "arrow off the hoverview side");
+            }
+        } else if (p.width >= 2 * size) {
+            check(root.mArrowLeft >= root.mViewLeft && root.mArrowLeft + 2 * size <= right,
+                    "arrow off the hoverview side");
+        }
+    }
+
+    private void checkMirrored(Placement rtl, StandInRoot rtlRoot, Placement ltr, StandInRoot ltrRoot) {
+        if (rtl.widthConstraint == 0) {
+            // no room on the side, nothing to compare
+            return;
+        }
+        int axis = rtl.rootLeft + rtl.rootRight;
+        int rtlLeft = rtlRoot.mViewLeft;
+        int ltrLeft = ltrRoot.mViewLeft;
+
+        check(rtl.resolvedPosition == mirrorPosition(ltr.resolvedPosition), "mirrored position");
+        check(rtl.width == ltr.width, "mirrored width");
+        check(rtl.height == ltr.height, "mirrored height");
+        check(rtlRoot.mViewTop == ltrRoot.mViewTop, "mirrored top");
+        // centering rounds down on both sides
+        check(Math.abs(rtlLeft - (axis - ltrLeft - ltr.width)) <= 1, "mirrored left");
+
+        // the raw translation moves the view from the right of the RTL root content area
+        int rtlLayoutLeft = rtl.rootRight - rtl.rootPaddingRight - rtl.width;
+        check(Math.abs(rtl.getTranslationX() - (axis - ltrLeft - ltr.width - rtlLayoutLeft)) <= 1,
+                "RTL translation");
+        if (rtl.arrowSize > 0) {
+            check(rtl.arrowDirection == mirrorArrow(ltr.arrowDirection), "mirrored arrow direction");
+            int arrowWidth = isHorizontal(rtl.resolvedPosition) ? rtl.arrowSize : 2 * rtl.arrowSize;
+            int rtlArrowLayoutLeft = rtl.rootRight - rtl.rootPaddingRight - arrowWidth;
+            // centered on a centered hoverview, rounds down twice
+            check(Math.abs(rtl.getArrowTranslationX()
+                    - (axis - ltrRoot.mArrowLeft - arrowWidth - rtlArrowLayoutLeft)) <= 2, "RTL arrow translation");
+        }
+    }
+
+    private static int signedOffsetX(Placement p) {
+        return p.rtl ? -p.offsetX : p.offsetX;
+    }
+
+    private static boolean isHorizontal(int position) {
+        return position == HoverView.POSITION_LEFT_TO || position == HoverView.POSITION_RIGHT_TO;
+    }
+
+    private static int mirrorPosition(int position) {
+        if (position == HoverView.POSITION_LEFT_TO) {
+            return HoverView.POSITION_RIGHT_TO;
+        } else if (position == HoverView.POSITION_RIGHT_TO) {
+            return HoverView.POSITION_LEFT_TO;
+        }
+        return position;
+    }
+
+    private static int mirrorArrow(int direction) {
+        if (direction == Placement.ARROW_LEFT) {
+            return Placement.ARROW_RIGHT;
+        } else if (direction == Placement.ARROW_RIGHT) {
+            return Placement.ARROW_LEFT;
+        }
+        return direction;
+    }
+
+    private static int mirrorAlign(int align) {
+        if (align == HoverView.ALIGN_LEFT) {
+            return HoverView.ALIGN_RIGHT;
+        } else if (align == HoverView.ALIGN_RIGHT) {
+            return HoverView.ALIGN_LEFT;
+        }
+        return align;
+    }
+
+    private void check(boolean condition, String message) {
+        if (!condition) {
+            fail(message + describe(mIteration, mPlacement));
+        }
+    }
+
+    private static String describe(int iteration, Placement p) {
+        return " at iteration " + iteration + " (seed " + SEED + "): position " + p.position
+                + " align " + p.align + " rtl " + p.rtl + " offset " + p.offsetX + "," + p.offsetY
+                + " anchor [" + p.anchorLeft + "," + p.anchorTop + "," + p.anchorRight + ","
+                + p.anchorBottom + "] root [" + p.rootLeft + "," + p.rootTop + "," + p.rootRight
+                + "," + p.rootBottom + "] padding [" + p.rootPaddingLeft + "," + p.rootPaddingTop
+                + "," + p.rootPaddingRight + "," + p.rootPaddingBottom + "] content "
+                + p.contentWidth + "x" + p.contentHeight + " arrow " + p.arrowSize
+                + " stack " + p.stackOffset + " -> position " + p.resolvedPosition + " x " + p.x
+                + " y " + p.y + " size " + p.width + "x" + p.height + " translation "
+                + p.getTranslationX() + " arrow " + p.arrowX + "," + p.arrowY;
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.tomergoldst.hoverview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PlacementTest {
+
+    /**
+     * Counts measurements, the height is the content area spread over the width.
+     */
+    private static class CountingMeasurer implements Placement.Measurer {
+
+        int mCount;
+
+        @Override
+        public int measureHeight(int width) {
+            mCount++;
+            return 95000 / Math.max(1, width);
+        }
+    }
+
+    @Test
+    public void compute_measuresEachWidthConstraintOnce() {
+        Placement placement = new Placement();
+        placement.setRoot(0, 0, 1000, 1000);
+        placement.setContentSize(950, 100);
+        placement.setAnchor(100, 500, 200, 550);
+        placement.align = HoverView.ALIGN_LEFT;
+        CountingMeasurer measurer = new CountingMeasurer();
+
+        // the positions tried when avoiding collisions, above and below share a constraint
+        int[] positions = {HoverView.POSITION_LEFT_TO, HoverView.POSITION_RIGHT_TO,
+                HoverView.POSITION_ABOVE, HoverView.POSITION_BELOW};
+        for (int round = 0; round < 3; round++) {
+            for (int position : positions) {
+                placement.position = position;
+                placement.compute(measurer);
+            }
+        }
+        assertEquals(3, measurer.mCount);
+        placement.position = HoverView.POSITION_LEFT_TO;
+        placement.compute(measurer);
+        assertEquals(100, placement.widthConstraint);
+        assertEquals(950, placement.height);
+
+        // a new content size measures again
+        placement.setContentSize(950, 100);
+        placement.compute(measurer);
+        assertEquals(4, measurer.mCount);
+    }
+
+}
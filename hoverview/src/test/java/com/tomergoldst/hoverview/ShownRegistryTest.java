@@ -0,0 +1,184 @@
+package com.tomergoldst.hoverview;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShownRegistryTest {
+
+    /**
+     * Runs the registry background work when asked to.
+     */
+    private static class QueueExecutor implements Executor {
+
+        final List<Runnable> mQueue = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable runnable) {
+            mQueue.add(runnable);
+        }
+
+        void runAll() {
+            while (!mQueue.isEmpty()) {
+                mQueue.remove(0).run();
+            }
+        }
+    }
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("hoverview_shown", ".log");
+        assertTrue(mFile.delete());
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+        new File(mFile.getPath() + ".tmp").delete();
+    }
+
+    @Test
+    public void markShown_isPersisted() {
+        QueueExecutor executor = new QueueExecutor();
+        ShownRegistry registry = new ShownRegistry(mFile, executor);
+        executor.runAll();
+
+        registry.markShown("onboarding");
+        registry.markShown(42L);
+        assertTrue(registry.isShown("onboarding"));
+        executor.runAll();
+
+        ShownRegistry reloaded = new ShownRegistry(mFile, executor);
+        executor.runAll();
+        assertTrue(reloaded.isLoaded());
+        assertTrue(reloaded.isShown("onboarding"));
+        assertTrue(reloaded.isShown(42L));
+        assertFalse(reloaded.isShown("other"));
+        assertEquals(16, mFile.length());
+    }
+
+    @Test
+    public void isShown_beforeLoadOnlyKnowsMarkedIds() throws IOException {
+        write(7L);
+        QueueExecutor executor = new QueueExecutor();
+        ShownRegistry registry = new ShownRegistry(mFile, executor);
+
+        assertFalse(registry.isLoaded());
+        assertFalse(registry.isShown(7L));
+        registry.markShown(8L);
+        assertTrue(registry.isShown(8L));
+
+        executor.runAll();
+        assertTrue(registry.isLoaded());
+        assertTrue(registry.isShown(7L));
+        assertTrue(registry.isShown(8L));
+    }
+
+    @Test
+    public void runWhenLoaded_runsOnceLoaded() {
+        QueueExecutor executor = new QueueExecutor();
+        ShownRegistry registry = new ShownRegistry(mFile, executor);
+        final int[] runs = new int[1];
+        Runnable callback = new Runnable() {
+            @Override
+            public void run() {
+                runs[0]++;
+            }
+        };
+
+        assertTrue(registry.runWhenLoaded(callback));
+        assertTrue(registry.runWhenLoaded(callback));
+        assertEquals(0, runs[0]);
+
+        executor.runAll();
+        assertEquals(1, runs[0]);
+        assertFalse(registry.runWhenLoaded(callback));
+        assertEquals(1, runs[0]);
+    }
+
+    @Test
+    public void load_ignoresTornLastEntry() throws IOException {
+        write(1L, 2L);
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.setLength(20);
+        file.close();
+
+        QueueExecutor executor = new QueueExecutor();
+        ShownRegistry registry = new ShownRegistry(mFile, executor);
+        executor.runAll();
+
+        assertTrue(registry.isShown(1L));
+        assertTrue(registry.isShown(2L));
+    }
+
+    @Test
+    public void load_compactsDuplicatedIds() throws IOException {
+        write(1L, 2L, 1L, 2L, 1L);
+        QueueExecutor executor = new QueueExecutor();
+        ShownRegistry registry = new ShownRegistry(mFile, executor);
+        executor.runAll();
+
+        assertTrue(registry.isShown(1L));
+        assertTrue(registry.isShown(2L));
+        assertEquals(16, mFile.length());
+
+        registry.markShown(3L);
+        executor.runAll();
+        ShownRegistry reloaded = new ShownRegistry(mFile, executor);
+        executor.runAll();
+        assertTrue(reloaded.isShown(1L));
+        assertTrue(reloaded.isShown(2L));
+        assertTrue(reloaded.isShown(3L));
+    }
+
+    @Test
+    public void longHashSet_holdsZeroAndGrows() {
+        ShownRegistry.LongHashSet set = new ShownRegistry.LongHashSet();
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        for (long i = 1; i <= 1000; i++) {
+            assertTrue(set.add(i * 0x100000000L));
+            assertTrue(set.add(-i));
+        }
+        assertFalse(set.add(-1));
+        assertEquals(2001, set.size());
+
+        assertTrue(set.contains(0));
+        assertTrue(set.contains(1000 * 0x100000000L));
+        assertTrue(set.contains(-1000));
+        assertFalse(set.contains(1));
+
+        ShownRegistry.LongHashSet copy = new ShownRegistry.LongHashSet();
+        copy.addAll(set);
+        assertEquals(set.size(), copy.size());
+        ByteBuffer buffer = ByteBuffer.allocate(copy.size() * 8);
+        copy.writeTo(buffer);
+        assertFalse(buffer.hasRemaining());
+    }
+
+    private void write(long... ids) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(ids.length * 8);
+        for (long id : ids) {
+            buffer.putLong(id);
+        }
+        FileOutputStream output = new FileOutputStream(mFile);
+        output.write(buffer.array());
+        output.close();
+    }
+
+}
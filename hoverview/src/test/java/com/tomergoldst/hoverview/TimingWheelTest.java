@@ -0,0 +1,123 @@
+package com.tomergoldst.hoverview;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+
+    @Test
+    public void advance_expiresTimersOfTheSameTickTogether() {
+        TimingWheel<Object> wheel = new TimingWheel<>(50, 8);
+        List<Object> expired = new ArrayList<>();
+        TimingWheel.Timer<Object> first = new TimingWheel.Timer<Object>("first");
+        TimingWheel.Timer<Object> second = new TimingWheel.Timer<Object>("second");
+        TimingWheel.Timer<Object> later = new TimingWheel.Timer<Object>("later");
+
+        wheel.schedule(first, 1000, 110);
+        wheel.schedule(second, 1010, 100);
+        // more than one round away, shares a slot with earlier ticks
+        wheel.schedule(later, 1000, 1000);
+
+        assertEquals(0, wheel.advance(1100, expired));
+        assertEquals(2, wheel.advance(1150, expired));
+        assertEquals(1, wheel.size());
+
+        wheel.schedule(later, 1150, 50);
+        assertEquals(1, wheel.advance(5000, expired));
+        assertTrue(wheel.isEmpty());
+        assertEquals(3, expired.size());
+    }
+
+    @Test
+    public void schedule_movesAScheduledTimer() {
+        TimingWheel<Object> wheel = new TimingWheel<>(50, 8);
+        List<Object> expired = new ArrayList<>();
+        TimingWheel.Timer<Object> timer = new TimingWheel.Timer<Object>("timer");
+
+        wheel.schedule(timer, 1000, 100);
+        wheel.schedule(timer, 1000, 300);
+        assertEquals(1, wheel.size());
+
+        assertEquals(0, wheel.advance(1200, expired));
+        assertEquals(1, wheel.advance(1300, expired));
+        assertFalse(timer.isScheduled());
+    }
+
+    @Test
+    public void cancel_removesTheTimer() {
+        TimingWheel<Object> wheel = new TimingWheel<>(50, 8);
+        List<Object> expired = new ArrayList<>();
+        TimingWheel.Timer<Object> first = new TimingWheel.Timer<Object>("first");
+        TimingWheel.Timer<Object> second = new TimingWheel.Timer<Object>("second");
+
+        wheel.schedule(first, 1000, 100);
+        wheel.schedule(second, 1000, 100);
+        assertTrue(wheel.cancel(first));
+        assertFalse(wheel.cancel(first));
+
+        assertEquals(1, wheel.advance(1100, expired));
+        assertEquals("second", expired.get(0));
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void schedule_neverExpiresOnTheCurrentTick() {
+        TimingWheel<Object> wheel = new TimingWheel<>(50, 8);
+        List<Object> expired = new ArrayList<>();
+        TimingWheel.Timer<Object> timer = new TimingWheel.Timer<Object>("timer");
+
+        wheel.schedule(timer, 1020, 0);
+        assertEquals(0, wheel.advance(1049, expired));
+        assertEquals(1, wheel.advance(1050, expired));
+    }
+
+    @Test
+    public void schedule_afterIdleTimeSkipsTheIdleTicks() {
+        TimingWheel<Object> wheel = new TimingWheel<>(50, 8);
+        List<Object> expired = new ArrayList<>();
+        TimingWheel.Timer<Object> timer = new TimingWheel.Timer<Object>("timer");
+
+        wheel.schedule(timer, 1000, 100);
+        assertEquals(1, wheel.advance(1100, expired));
+
+        // many rounds later
+        wheel.schedule(timer, 100000, 100);
+        assertEquals(0, wheel.advance(100050, expired));
+        assertEquals(1, wheel.advance(100100, expired));
+    }
+
+    @Test
+    public void getNextDeadlineMillis_returnsTheEarliestExpiry() {
+        TimingWheel<Object> wheel = new TimingWheel<>(50, 8);
+        List<Object> expired = new ArrayList<>();
+        TimingWheel.Timer<Object> later = new TimingWheel.Timer<Object>("later");
+        TimingWheel.Timer<Object> sooner = new TimingWheel.Timer<Object>("sooner");
+        assertEquals(-1, wheel.getNextDeadlineMillis());
+
+        // several rounds away, alone on the wheel
+        wheel.schedule(later, 1000, 30000);
+        assertEquals(31000, wheel.getNextDeadlineMillis());
+
+        wheel.schedule(sooner, 1000, 120);
+        assertEquals(1150, wheel.getNextDeadlineMillis());
+        assertEquals(0, wheel.advance(1149, expired));
+        assertEquals(1, wheel.advance(wheel.getNextDeadlineMillis(), expired));
+
+        // expires when advanced to its deadline, whatever the slot it shares
+        assertEquals(31000, wheel.getNextDeadlineMillis());
+        assertEquals(1, wheel.advance(wheel.getNextDeadlineMillis(), expired));
+        assertEquals(-1, wheel.getNextDeadlineMillis());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsSlotsNotAPowerOfTwo() {
+        new TimingWheel<>(50, 12);
+    }
+
+}